@@ -0,0 +1,90 @@
+package org.example;
+
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/// Builds the game states the benchmarks run against.
+///
+/// `bundled` is the shipped `initial_state.json`. `grid-N` is the bundled world with a square grid of at least N generic
+/// rooms attached to the hallway's free east exit, with four inert items in every grid room. The player starts in the
+/// corner of the grid, so room-local operations(autocomplete, `take`) see a realistic number of items.
+final class BenchmarkWorlds {
+    static final String BUNDLED = "bundled";
+    static final String GRID_PREFIX = "grid-";
+    static final int ITEMS_PER_ROOM = 4;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private BenchmarkWorlds() {
+    }
+
+    static String json(String world) {
+        ObjectNode root;
+        try (var stream = Objects.requireNonNull(GameState.class.getClassLoader().getResourceAsStream("initial_state.json"))) {
+            root = (ObjectNode) MAPPER.readTree(stream);
+        } catch (IOException e) {
+            throw new IllegalStateException("initial_state.json unavailable", e);
+        }
+        if (world.equals(BUNDLED)) {
+            return root.toString();
+        }
+        if (!world.startsWith(GRID_PREFIX)) {
+            throw new IllegalArgumentException("Unknown benchmark world: " + world);
+        }
+        int rooms = Integer.parseInt(world.substring(GRID_PREFIX.length()));
+        int side = (int) Math.ceil(Math.sqrt(rooms));
+        addGrid(root, side);
+        return root.toString();
+    }
+
+    static GameState load(String world, ViewController controller) {
+        var state = MAPPER.readValue(json(world), GameState.class);
+        state.controller = controller;
+        state.save_name = "jmh-" + world;
+        state.roomUpdateHook();
+        state.itemUpdateHook();
+        return state;
+    }
+
+    static String gridRoomId(int row, int column) {
+        return "grid_" + row + "_" + column;
+    }
+
+    static String gridItemName(int row, int column, int index) {
+        return "Item " + row + " " + column + " " + index;
+    }
+
+    private static void addGrid(ObjectNode root, int side) {
+        var rooms = (ObjectNode) root.get("rooms");
+        var items = (ObjectNode) root.get("items");
+        ((ObjectNode) rooms.get("hallway").get("paths")).put("East", gridRoomId(0, 0));
+
+        for (int row = 0; row < side; row++) {
+            for (int column = 0; column < side; column++) {
+                var id = gridRoomId(row, column);
+                var room = rooms.putObject(id);
+                room.put("name", "Room " + row + "-" + column);
+                room.put("description", "in a featureless room at " + row + ", " + column);
+                var paths = room.putObject("paths");
+                if (row > 0) paths.put("North", gridRoomId(row - 1, column));
+                if (row + 1 < side) paths.put("South", gridRoomId(row + 1, column));
+                if (column + 1 < side) paths.put("East", gridRoomId(row, column + 1));
+                if (column > 0) paths.put("West", gridRoomId(row, column - 1));
+                if (row == 0 && column == 0) paths.put("West", "hallway");
+
+                var room_items = room.putArray("items");
+                for (int index = 0; index < ITEMS_PER_ROOM; index++) {
+                    var item_id = "item_" + row + "_" + column + "_" + index;
+                    room_items.add(item_id);
+                    var item = items.putObject(item_id);
+                    item.put("name", gridItemName(row, column, index));
+                    item.put("description", "an unremarkable object");
+                }
+            }
+        }
+        ((ObjectNode) root.get("player")).put("room", gridRoomId(0, 0));
+    }
+}
@@ -0,0 +1,310 @@
+package org.example;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/// Checks `BlockingRingDeque` against its contract, single-threaded and under contention. Not a JMH benchmark, run it
+/// with `java -cp ./benchmarks/target/benchmarks.jar org.example.BlockingRingDequeStress`. Exits with status 1 if any
+/// check fails.
+///
+/// - A random sequence of operations is replayed against an `ArrayDeque`, with a small capacity so the ring wraps
+///   around at both ends many times.
+/// - Threads are parked on the empty and full conditions, and must be woken by a push or pop at either end, or by an
+///   interrupt.
+/// - Producers push at one end while consumers pop at the other, and every consumer must see each producer's elements
+///   in the order they were pushed, which any linearizable FIFO queue guarantees.
+/// - Producers and consumers pick a random end and a random blocking or non-blocking operation, and every element must
+///   be popped exactly once. A lost wakeup shows up as threads that are still blocked at the deadline.
+final class BlockingRingDequeStress {
+    private static final Duration DEADLINE = Duration.ofSeconds(60);
+    private static final int PRODUCERS = 4;
+    private static final int CONSUMERS = 4;
+    private static final int PER_PRODUCER = 50_000;
+
+    private BlockingRingDequeStress() {
+    }
+
+    static void main(String[] args) throws InterruptedException {
+        try {
+            sequentialModel(1, 1_000_000);
+            sequentialModel(5, 1_000_000);
+            System.out.println("sequential model: ok");
+            blockingConditions();
+            System.out.println("blocking on not-empty and not-full: ok");
+            concurrentFifo(true, 8);
+            concurrentFifo(false, 8);
+            System.out.println("per-producer order across threads: ok");
+            concurrentMixed(1);
+            concurrentMixed(3);
+            concurrentMixed(64);
+            System.out.println("mixed ends, exactly once: ok");
+        } catch (AssertionError e) {
+            System.err.println("BlockingRingDeque stress check failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    static void sequentialModel(int capacity, int operations) throws InterruptedException {
+        var deque = new BlockingRingDeque<Integer>(capacity);
+        var model = new ArrayDeque<Integer>();
+        var random = new SplittableRandom(capacity);
+        for (int i = 0; i < operations; i++) {
+            var full = model.size() == capacity;
+            switch (random.nextInt(8)) {
+                case 0 -> {
+                    check(deque.try_push_back(i) == !full, "try_push_back with " + model.size() + " elements");
+                    if (!full) model.addLast(i);
+                }
+                case 1 -> {
+                    check(deque.try_push_front(i) == !full, "try_push_front with " + model.size() + " elements");
+                    if (!full) model.addFirst(i);
+                }
+                case 2 -> {
+                    if (!full) {
+                        deque.push_back(i);
+                        model.addLast(i);
+                    }
+                }
+                case 3 -> {
+                    if (!full) {
+                        deque.push_front(i);
+                        model.addFirst(i);
+                    }
+                }
+                case 4 -> check(equal(deque.poll_front(), model.pollFirst()), "poll_front at operation " + i);
+                case 5 -> check(equal(deque.try_pop_back().orElse(null), model.pollLast()), "try_pop_back at operation " + i);
+                case 6 -> {
+                    if (!model.isEmpty()) check(deque.pop_front().equals(model.removeFirst()), "pop_front at operation " + i);
+                }
+                default -> {
+                    if (!model.isEmpty()) check(deque.pop_back().equals(model.removeLast()), "pop_back at operation " + i);
+                }
+            }
+            check(deque.size() == model.size(), "size " + deque.size() + " instead of " + model.size());
+        }
+        check(deque.toString().equals("BlockingRingDeque{data=" + model + ", len=" + model.size() + ", capacity=" + capacity + "}"),
+                "contents " + deque + " instead of " + model);
+    }
+
+    private static boolean equal(Integer a, Integer b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    static void blockingConditions() throws InterruptedException {
+        // Popping from an empty deque waits for a push at either end
+        for (var pop_front : new boolean[]{true, false}) {
+            for (var push_back : new boolean[]{true, false}) {
+                var deque = new BlockingRingDeque<Integer>(2);
+                var popped = new AtomicReference<Integer>();
+                var consumer = startParked(() -> popped.set(pop_front ? deque.pop_front() : deque.pop_back()));
+                if (push_back) deque.push_back(7);
+                else deque.push_front(7);
+                finish(consumer);
+                check(Integer.valueOf(7).equals(popped.get()), "a parked pop returned " + popped.get());
+                check(deque.isEmpty(), "the deque kept a popped element");
+            }
+        }
+        // Pushing onto a full deque waits for a pop at either end, and the pushed element lands at its own end
+        for (var push_back : new boolean[]{true, false}) {
+            for (var pop_front : new boolean[]{true, false}) {
+                var deque = new BlockingRingDeque<Integer>(2);
+                deque.push_back(1);
+                deque.push_back(2);
+                var producer = startParked(() -> {
+                    if (push_back) deque.push_back(3);
+                    else deque.push_front(3);
+                });
+                check(deque.size() == 2, "a push onto a full deque didn't wait");
+                var removed = pop_front ? deque.poll_front() : deque.poll_back();
+                finish(producer);
+                var remaining = pop_front ? 2 : 1;
+                var expected = push_back ? List.of(remaining, 3) : List.of(3, remaining);
+                check(removed == (pop_front ? 1 : 2), "popped " + removed);
+                check(List.of(deque.poll_front(), deque.poll_front()).equals(expected), "a parked push landed at the wrong end");
+            }
+        }
+        // Parked threads can be interrupted
+        var empty = new BlockingRingDeque<Integer>(1);
+        var full = new BlockingRingDeque<Integer>(1);
+        full.push_back(1);
+        var interrupted = new AtomicInteger();
+        var parked = List.of(
+                startParked(() -> interruptible(empty::pop_front, interrupted)),
+                startParked(() -> interruptible(() -> full.push_front(2), interrupted)));
+        for (var thread : parked) {
+            thread.interrupt();
+            finish(thread);
+        }
+        check(interrupted.get() == 2, "only " + interrupted.get() + " of 2 parked threads were interrupted");
+        check(empty.isEmpty() && full.size() == 1, "an interrupted operation changed the deque");
+    }
+
+    private interface Blocking {
+        void run() throws InterruptedException;
+    }
+
+    private static void interruptible(Blocking operation, AtomicInteger interrupted) {
+        try {
+            operation.run();
+        } catch (InterruptedException e) {
+            interrupted.incrementAndGet();
+        }
+    }
+
+    /// Starts the operation on a new thread and returns once that thread is waiting on one of the deque's conditions.
+    private static Thread startParked(Blocking operation) throws InterruptedException {
+        var failure = new AtomicReference<Throwable>();
+        var thread = Thread.ofPlatform().start(() -> {
+            try {
+                operation.run();
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        var deadline = System.nanoTime() + DEADLINE.toNanos();
+        while (thread.getState() != Thread.State.WAITING) {
+            check(thread.isAlive(), "the operation returned without waiting: " + failure.get());
+            check(System.nanoTime() < deadline, "the operation never started waiting");
+            Thread.onSpinWait();
+        }
+        return thread;
+    }
+
+    private static void finish(Thread thread) throws InterruptedException {
+        check(thread.join(DEADLINE), "a parked thread was never woken");
+    }
+
+    /// Producers push at one end and consumers pop at the other. Each consumer must see every producer's elements in the
+    /// order that producer pushed them.
+    static void concurrentFifo(boolean push_back, int capacity) throws InterruptedException {
+        var deque = new BlockingRingDeque<Integer>(capacity);
+        var seen = new AtomicIntegerArray(PRODUCERS * PER_PRODUCER);
+        var remaining = new AtomicInteger(PRODUCERS * PER_PRODUCER);
+        var start = new CountDownLatch(1);
+        var failure = new AtomicReference<Throwable>();
+        var threads = new ArrayList<Thread>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            var producer = p;
+            threads.add(start(failure, start, () -> {
+                for (int i = 0; i < PER_PRODUCER; i++) {
+                    var value = producer * PER_PRODUCER + i;
+                    if (push_back) deque.push_back(value);
+                    else deque.push_front(value);
+                }
+            }));
+        }
+        for (int c = 0; c < CONSUMERS; c++) {
+            threads.add(start(failure, start, () -> {
+                var last = new int[PRODUCERS];
+                Arrays.fill(last, -1);
+                // Every claim is backed by an element some producer still pushes, so the pop below can't wait forever
+                while (remaining.getAndDecrement() > 0) {
+                    int value = push_back ? deque.pop_front() : deque.pop_back();
+                    var producer = value / PER_PRODUCER;
+                    var sequence = value % PER_PRODUCER;
+                    check(sequence > last[producer], "producer " + producer + "'s element " + sequence + " was popped after " + last[producer]);
+                    last[producer] = sequence;
+                    check(seen.incrementAndGet(value) == 1, "element " + value + " was popped twice");
+                }
+            }));
+        }
+        await(threads, start, failure);
+        check(deque.isEmpty(), "elements were left in the deque");
+    }
+
+    /// Producers and consumers pick a random end and a random operation for every element, and each element must be
+    /// popped exactly once.
+    static void concurrentMixed(int capacity) throws InterruptedException {
+        var deque = new BlockingRingDeque<Integer>(capacity);
+        var seen = new AtomicIntegerArray(PRODUCERS * PER_PRODUCER);
+        var remaining = new AtomicInteger(PRODUCERS * PER_PRODUCER);
+        var start = new CountDownLatch(1);
+        var failure = new AtomicReference<Throwable>();
+        var threads = new ArrayList<Thread>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            var producer = p;
+            threads.add(start(failure, start, () -> {
+                var random = new SplittableRandom(producer);
+                for (int i = 0; i < PER_PRODUCER; i++) {
+                    var value = producer * PER_PRODUCER + i;
+                    switch (random.nextInt(4)) {
+                        case 0 -> deque.push_back(value);
+                        case 1 -> deque.push_front(value);
+                        case 2 -> {
+                            while (!deque.try_push_back(value)) Thread.yield();
+                        }
+                        default -> {
+                            while (!deque.try_push_front(value)) Thread.yield();
+                        }
+                    }
+                }
+            }));
+        }
+        for (int c = 0; c < CONSUMERS; c++) {
+            var consumer = c;
+            threads.add(start(failure, start, () -> {
+                var random = new SplittableRandom(PRODUCERS + consumer);
+                while (remaining.getAndDecrement() > 0) {
+                    Integer value = switch (random.nextInt(4)) {
+                        case 0 -> deque.pop_front();
+                        case 1 -> deque.pop_back();
+                        case 2 -> deque.poll_front();
+                        default -> deque.try_pop_back().orElse(null);
+                    };
+                    while (value == null) {
+                        Thread.yield();
+                        value = deque.poll_back();
+                    }
+                    check(seen.incrementAndGet(value) == 1, "element " + value + " was popped twice");
+                }
+            }));
+        }
+        await(threads, start, failure);
+        check(deque.isEmpty(), "elements were left in the deque");
+        for (int i = 0; i < seen.length(); i++) {
+            check(seen.get(i) == 1, "element " + i + " was popped " + seen.get(i) + " times");
+        }
+    }
+
+    private static Thread start(AtomicReference<Throwable> failure, CountDownLatch start, Blocking body) {
+        return Thread.ofPlatform().start(() -> {
+            try {
+                start.await();
+                body.run();
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+        });
+    }
+
+    private static void await(List<Thread> threads, CountDownLatch start, AtomicReference<Throwable> failure) throws InterruptedException {
+        start.countDown();
+        var deadline = System.nanoTime() + DEADLINE.toNanos();
+        for (var thread : threads) {
+            var left = Math.max(deadline - System.nanoTime(), 1);
+            if (!thread.join(Duration.ofNanos(left))) {
+                // Unblock the rest so the check can report
+                threads.forEach(Thread::interrupt);
+                throw new AssertionError("threads were still blocked after " + DEADLINE.toSeconds() + "s, a wakeup was lost");
+            }
+        }
+        if (failure.get() instanceof AssertionError e) {
+            throw e;
+        }
+        check(failure.get() == null, "a thread failed: " + failure.get());
+    }
+}
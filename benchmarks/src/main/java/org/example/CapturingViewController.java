@@ -0,0 +1,59 @@
+package org.example;
+
+import java.util.List;
+import java.util.Optional;
+
+/// A headless view that keeps only the last message, so benchmarks can hand it to JMH instead of printing.
+final class CapturingViewController implements ViewController {
+    String last = "";
+    long messages = 0;
+
+    @Override
+    public boolean WasExitRequested() {
+        return false;
+    }
+
+    @Override
+    public void notifyOfCompletion() {
+    }
+
+    @Override
+    public <T> Optional<T> presentSelectionList(List<T> options) {
+        return Optional.empty();
+    }
+
+    @Override
+    public String presentTextSelectionListWithPrompt(List<String> options, String prompt) {
+        return "";
+    }
+
+    @Override
+    public Optional<String> consumeTextInput() {
+        return Optional.empty();
+    }
+
+    @Override
+    public void presentTextPrompt(String prompt) {
+        capture(prompt);
+    }
+
+    @Override
+    public void presentMessage(String message) {
+        capture(message);
+    }
+
+    @Override
+    public void presentUrgentMessage(String message) {
+        capture(message);
+    }
+
+    @Override
+    public void presentErrorMessage(String message) {
+        capture(message);
+    }
+
+    private void capture(String message) {
+        last = message;
+        messages++;
+    }
+}
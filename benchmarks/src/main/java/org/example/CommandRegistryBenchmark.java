@@ -0,0 +1,69 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandRegistryBenchmark {
+    @State(Scope.Benchmark)
+    public static class ParseState {
+        @Param({"look", "take", "take the keys", "pick up black mold", "go north", "use keys", "save as slot", "delete save slot", "xyzzy"})
+        public String input;
+    }
+
+    @Benchmark
+    public Optional<Command> parse(ParseState parse) {
+        return CommandRegistry.parse(parse.input);
+    }
+
+    @State(Scope.Benchmark)
+    public static class AutocompleteState {
+        @Param({BenchmarkWorlds.BUNDLED, "grid-1024"})
+        public String world;
+
+        // "t"/"sa" hit the trie, "take " and "go " fall through to the parsers
+        @Param({"t", "sa", "take ", "take item 0 0", "go "})
+        public String text;
+
+        GameState state;
+
+        @Setup
+        public void setup() {
+            state = BenchmarkWorlds.load(world, new CapturingViewController());
+        }
+    }
+
+    @Benchmark
+    public List<String> autocomplete(AutocompleteState autocomplete) {
+        return CommandRegistry.autocomplete(autocomplete.state, autocomplete.text);
+    }
+
+    @State(Scope.Benchmark)
+    public static class CorrectionState {
+        @Param({BenchmarkWorlds.BUNDLED, "grid-1024", "grid-16384"})
+        public String world;
+
+        @Param({"tkae keys", "tkae itme 3 4 1", "lok", "xyzzy"})
+        public String text;
+
+        GameState state;
+
+        @Setup
+        public void setup() {
+            state = BenchmarkWorlds.load(world, new CapturingViewController());
+        }
+    }
+
+    @Benchmark
+    public List<String> suggestCorrections(CorrectionState correction) {
+        return CommandRegistry.suggestCorrections(correction.state, correction.text);
+    }
+}
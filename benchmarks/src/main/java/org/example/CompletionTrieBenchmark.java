@@ -0,0 +1,57 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompletionTrieBenchmark {
+    @Param({"16", "1024", "65536"})
+    public int vocabulary;
+
+    // Length of the searched prefix, taken from a word in the vocabulary
+    @Param({"0", "1", "3", "6"})
+    public int prefixLength;
+
+    private CompletionTrie trie;
+    private String prefix;
+
+    @Setup
+    public void setup() {
+        trie = new CompletionTrie();
+        var random = new Random(42);
+        String sample = "";
+        for (int i = 0; i < vocabulary; i++) {
+            var word = randomWord(random);
+            trie.insert(word);
+            sample = word;
+        }
+        prefix = sample.substring(0, Math.min(prefixLength, sample.length()));
+    }
+
+    private static String randomWord(Random random) {
+        int length = 4 + random.nextInt(9);
+        var word = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + random.nextInt(26)));
+        }
+        return word.toString();
+    }
+
+    @Benchmark
+    public ArrayList<String> search() {
+        return trie.search(prefix);
+    }
+
+    @Benchmark
+    public ArrayList<String> searchLimited() {
+        return trie.search(prefix, 10);
+    }
+}
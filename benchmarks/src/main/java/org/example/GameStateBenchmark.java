@@ -0,0 +1,106 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameStateBenchmark {
+    @Param({BenchmarkWorlds.BUNDLED, "grid-1024", "grid-16384"})
+    public String world;
+
+    private CapturingViewController controller;
+    private GameState state;
+    private boolean moved;
+    private final GameHistory history = new GameHistory();
+
+    @Setup
+    public void setup() {
+        controller = new CapturingViewController();
+        state = BenchmarkWorlds.load(world, controller);
+    }
+
+    @Benchmark
+    public Optional<Item> lookupItemById() {
+        return state.lookupItem("keys");
+    }
+
+    @Benchmark
+    public Optional<Item> lookupItemByName() {
+        return state.lookupItem("black mold");
+    }
+
+    @Benchmark
+    public Optional<Item> lookupItemMiss() {
+        return state.lookupItem("xyzzy");
+    }
+
+    @Benchmark
+    public String mapMessage() {
+        state.mapMessage();
+        return controller.last;
+    }
+
+    @Benchmark
+    public String mapWindowMessage() {
+        state.mapMessage(MapRenderer.DEFAULT_VIEWPORT_RADIUS);
+        return controller.last;
+    }
+
+    @Benchmark
+    public String mapMessageAfterMove() {
+        // Alternates between two rooms, so every call moves the highlighted room
+        moved = !moved;
+        state.player.setCurrentRoomId(moved ? "kitchen" : "hallway");
+        state.mapMessage();
+        return controller.last;
+    }
+
+    @Benchmark
+    public MapLayout mapLayout() {
+        return new MapLayout(state.loaded_rooms);
+    }
+
+    /// Compare with `SaveManagerBenchmark.encode`, which was the only way to capture the state before snapshots.
+    @Benchmark
+    public GameState snapshot() {
+        return state.snapshot();
+    }
+
+    /// A snapshot followed by a command that changes the current room, which the game then copies.
+    @Benchmark
+    public GameState snapshotAndChangeRoom() {
+        var snapshot = state.snapshot();
+        state.currentRoomForUpdate().addItem("jmh_item");
+        state.currentRoomForUpdate().takeItem("jmh_item");
+        return snapshot;
+    }
+
+    /// What every command that changes the game pays for `undo`, followed by undoing it.
+    @Benchmark
+    public long recordAndUndo() {
+        var before = state.snapshot();
+        state.currentRoomForUpdate().addItem("keys");
+        history.recorded(before, state);
+        history.undo(state);
+        return history.retainedBytes();
+    }
+
+    @Benchmark
+    public long addAndRemoveRoom() {
+        var room = new Room();
+        room.name = "Annex";
+        room.setExit(Direction.South, "bathroom");
+        state.addRoom("jmh_annex", room);
+        state.setExit("bathroom", Direction.North, "jmh_annex");
+        state.setExit("bathroom", Direction.North, null);
+        state.removeRoom("jmh_annex");
+        return state.layout.getVersion();
+    }
+}
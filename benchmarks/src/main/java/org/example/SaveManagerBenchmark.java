@@ -0,0 +1,95 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/// Round-trips through the real save directory, under a slot name that is removed again after the run. The encoded size
+/// of each world and format is printed during setup.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SaveManagerBenchmark {
+    private static final Duration FLUSH_TIMEOUT = Duration.ofSeconds(30);
+
+    @Param({BenchmarkWorlds.BUNDLED, "grid-1024"})
+    public String world;
+
+    @Param({"JSON", "CBOR"})
+    public SaveFormat format;
+
+    private GameState state;
+    private String save_name;
+    private byte[] encoded;
+
+    @Setup
+    public void setup() throws InterruptedException {
+        state = BenchmarkWorlds.load(world, new CapturingViewController());
+        save_name = "jmh-benchmark-" + world;
+        // Gives the state a save of its own to journal into
+        state.save_name = save_name;
+        state.journal_id = SaveJournal.newJournalId();
+        SaveManager.saveState(save_name, state, format);
+        // So load reads the file rather than the save waiting to be written
+        SaveManager.flushSaves(FLUSH_TIMEOUT);
+        encoded = format.encode(state);
+        System.out.println("Encoded size of " + world + " as " + format + ": " + encoded.length + " bytes");
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        SaveManager.flushSaves(FLUSH_TIMEOUT);
+        SaveManager.deleteSave(save_name);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return format.encode(state);
+    }
+
+    @Benchmark
+    public GameState decode() {
+        return format.decode(encoded);
+    }
+
+    /// What the game thread pays for a save, the write itself happens in the background.
+    @Benchmark
+    public void save() {
+        SaveManager.saveState(save_name, state, format);
+    }
+
+    /// What autosaving a turn costs the game thread, including folding the journal into a snapshot every so often.
+    @Benchmark
+    public void recordCommand() {
+        SaveManager.recordCommand(state, "go north");
+    }
+
+    @Benchmark
+    public void saveDurably() throws InterruptedException {
+        SaveManager.saveState(save_name, state, format);
+        SaveManager.flushSaves(FLUSH_TIMEOUT);
+    }
+
+    /// What completing a save name costs on every keystroke.
+    @Benchmark
+    public List<String> autocompleteSaveName() {
+        return CommandRegistry.autocomplete(state, "load jmh-");
+    }
+
+    @Benchmark
+    public GameState load() {
+        return SaveManager.loadState(save_name);
+    }
+
+    @Benchmark
+    public GameState roundTrip() throws InterruptedException {
+        SaveManager.saveState(save_name, state, format);
+        SaveManager.flushSaves(FLUSH_TIMEOUT);
+        return SaveManager.loadState(save_name);
+    }
+}
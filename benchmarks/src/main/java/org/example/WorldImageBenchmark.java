@@ -0,0 +1,98 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/// Compares creating a new game from the world's JSON, from a compiled world image, and by copying a game loaded earlier.
+/// The heap each game retains is printed during setup.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorldImageBenchmark {
+    // Games held at once while measuring the heap they retain
+    private static final int HEAP_SAMPLE_GAMES = 8;
+
+    @Param({BenchmarkWorlds.BUNDLED, "grid-1024", "grid-16384"})
+    public String world;
+
+    private byte[] json;
+    private Path image_path;
+    private WorldImage image;
+    private GameState template;
+
+    @Setup
+    public void setup() throws Exception {
+        json = BenchmarkWorlds.json(world).getBytes(StandardCharsets.UTF_8);
+        image_path = Files.createTempFile("jmh-" + world, ".world");
+        Files.write(image_path, WorldImage.compile(json));
+        image = WorldImage.open(image_path);
+        // Also decodes the strings every game shares
+        template = image.newGame();
+        System.out.printf("Image of %s: %d bytes, JSON: %d bytes%n", world, Files.size(image_path), json.length);
+        System.out.printf("Heap per game of %s: %.1fKB from JSON, %.1fKB from the image, %.1fKB as a copy%n", world,
+                retainedBytes(this::fromJson) / 1024.0, retainedBytes(this::fromImage) / 1024.0,
+                retainedBytes(this::fromTemplate) / 1024.0);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(image_path);
+    }
+
+    /// How games were created before world images.
+    @Benchmark
+    public GameState fromJson() {
+        var game = SaveFormat.JSON.decode(json);
+        game.roomUpdateHook();
+        game.itemUpdateHook();
+        return game;
+    }
+
+    @Benchmark
+    public GameState fromImage() {
+        return image.newGame();
+    }
+
+    /// How `SaveManager.loadInitialState` creates every game after the first.
+    @Benchmark
+    public GameState fromTemplate() {
+        return template.copy();
+    }
+
+    /// The first game after startup, which also maps the image and decodes the strings.
+    @Benchmark
+    public GameState openAndLoadImage() throws IOException {
+        return WorldImage.open(image_path).newGame();
+    }
+
+    private static long retainedBytes(Callable<GameState> create) throws Exception {
+        var before = usedHeapAfterGC();
+        var games = new ArrayList<GameState>();
+        for (int i = 0; i < HEAP_SAMPLE_GAMES; i++) {
+            games.add(create.call());
+        }
+        var after = usedHeapAfterGC();
+        Reference.reachabilityFence(games);
+        return Math.max(after - before, 0) / HEAP_SAMPLE_GAMES;
+    }
+
+    private static long usedHeapAfterGC() throws InterruptedException {
+        var runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
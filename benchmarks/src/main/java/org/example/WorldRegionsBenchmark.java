@@ -0,0 +1,70 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+/// Measures a world split into regions: starting a game, which only loads the regions around the player, and walking
+/// across the grid and back, which loads regions ahead of the player and unloads the ones behind it. The regions and
+/// rooms each game holds are printed during setup.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorldRegionsBenchmark {
+    @Param({"grid-1024", "grid-16384"})
+    public String world;
+
+    @Param({"64", "256"})
+    public int region_rooms;
+
+    private Path directory;
+    private WorldRegions regions;
+    private GameState walker;
+    private int side;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("jmh-" + world);
+        var count = WorldRegions.compile(BenchmarkWorlds.json(world).getBytes(StandardCharsets.UTF_8), directory, region_rooms);
+        regions = WorldRegions.open(directory);
+        walker = regions.newGame();
+        walker.controller = new CapturingViewController();
+        side = (int) Math.ceil(Math.sqrt(Integer.parseInt(world.substring(BenchmarkWorlds.GRID_PREFIX.length()))));
+        System.out.printf("%s in %d regions of up to %d rooms: a new game loads %d regions, %d rooms%n", world, count,
+                region_rooms, walker.loaded_regions.size(), walker.loaded_rooms.size());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (var files = Files.walk(directory)) {
+            for (var path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public GameState newGame() throws IOException {
+        return regions.newGame();
+    }
+
+    /// Walks along the first row of the grid and back to where it started.
+    @Benchmark
+    public String walkRow() {
+        for (int step = 1; step < side; step++) {
+            walker.goTo("east");
+        }
+        for (int step = 1; step < side; step++) {
+            walker.goTo("west");
+        }
+        return walker.player.getCurrentRoomId();
+    }
+}
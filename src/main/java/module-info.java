@@ -8,4 +8,9 @@ module Zork {
     requires dev.dirs;
     requires javafx.fxml;
     requires tools.jackson.core;
+    requires tools.jackson.dataformat.cbor;
+
+    exports org.example;
+    uses org.example.ObjectTypeProvider;
+    provides org.example.ObjectTypeProvider with org.example.BuiltinObjectTypes;
 }
@@ -0,0 +1,111 @@
+package org.example;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/// Computes completions on a dedicated thread, so typing never waits for the game state or the disk.
+///
+/// Only the latest request matters: starting a new one cancels the previous one, and requests that were superseded
+/// before they started are skipped. When the text extends the previous request's text, the previous completions are
+/// narrowed down instead of being computed again. Call `invalidate` whenever the completions may have changed, such as
+/// after every command.
+public class AutocompleteService implements AutoCloseable {
+    /// The most completions returned for one request
+    public static final int MAX_RESULTS = 50;
+
+    private final Function<String, List<String>> source;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("Zork-Autocomplete").daemon().factory());
+    // Incremented by every request, a running request gives up once it no longer holds the latest value
+    private final AtomicLong latest_request = new AtomicLong();
+    // Incremented by `invalidate`, narrowing is only allowed within one epoch
+    private final AtomicLong epoch = new AtomicLong();
+    private volatile CompletableFuture<List<String>> pending = null;
+
+    // Only accessed on the executor thread
+    private String previous_text = null;
+    private List<String> previous_results = List.of();
+    private long previous_epoch = -1;
+
+    public AutocompleteService(Function<String, List<String>> source) {
+        this.source = source;
+    }
+
+    /// Starts computing the completions for the text, cancelling any request that hasn't finished yet.
+    public CompletableFuture<List<String>> request(String text) {
+        var request = latest_request.incrementAndGet();
+        var previous = pending;
+        if (previous != null) {
+            previous.cancel(false);
+        }
+        var future = CompletableFuture.supplyAsync(() -> {
+            if (latest_request.get() != request) {
+                throw new CancellationException("Superseded by a newer request");
+            }
+            return complete(text);
+        }, executor);
+        pending = future;
+        return future;
+    }
+
+    /// Returns the completions for the text, or nothing if a newer request supersedes this one first.
+    public List<String> completeBlocking(String text) {
+        try {
+            return request(text).get();
+        } catch (CancellationException e) {
+            return List.of();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CancellationException) {
+                return List.of();
+            }
+            System.err.println("Autocomplete failed: " + e.getCause());
+            return List.of();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return List.of();
+        }
+    }
+
+    /// Discards the completions kept for narrowing, as the game state or the saves have changed.
+    public void invalidate() {
+        epoch.incrementAndGet();
+    }
+
+    // Runs on the executor thread
+    private List<String> complete(String text) {
+        var current_epoch = epoch.get();
+        if (current_epoch == previous_epoch && previous_text != null && text.startsWith(previous_text)
+                // A capped result may be missing completions of the longer text
+                && previous_results.size() < MAX_RESULTS) {
+            var narrowed = previous_results.stream().filter(result -> result.startsWith(text)).toList();
+            // Once nothing is left, the text may have moved on to completions from another source, such as an item
+            // name after a verb
+            if (!narrowed.isEmpty()) {
+                return remember(text, narrowed, current_epoch);
+            }
+        }
+        var results = source.apply(text);
+        if (results.size() > MAX_RESULTS) {
+            results = results.subList(0, MAX_RESULTS);
+        }
+        return remember(text, List.copyOf(results), current_epoch);
+    }
+
+    private List<String> remember(String text, List<String> results, long current_epoch) {
+        previous_text = text;
+        previous_results = results;
+        previous_epoch = current_epoch;
+        return results;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,176 @@
+package org.example;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/// A BK-tree over words, answering "which words are within N edits of this one" without comparing against every word.
+///
+/// Every child is filed under its Levenshtein distance to its parent. Because the distance is a metric, a search for
+/// words within `max_distance` of the query only has to descend into children whose distance to the parent is within
+/// `max_distance` of the query's own distance to the parent.
+///
+/// Words are counted, so the same word can be added for several items. Removing a word only marks its node as unused,
+/// the tree is rebuilt once more than half of its nodes are unused.
+public class BKTree {
+    private BKNode root = null;
+    private int nodes = 0;
+    private int unused_nodes = 0;
+
+    /// Adds one occurrence of the word.
+    public void add(String word) {
+        if (root == null) {
+            root = new BKNode(word);
+            nodes++;
+            return;
+        }
+        var node = root;
+        while (true) {
+            int distance = distance(word, node.word);
+            if (distance == 0) {
+                if (node.count++ == 0) {
+                    unused_nodes--;
+                }
+                return;
+            }
+            var child = node.child(distance);
+            if (child == null) {
+                node.addChild(distance, new BKNode(word));
+                nodes++;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /// Removes one occurrence of the word, if it was added.
+    public void remove(String word) {
+        var node = root;
+        while (node != null) {
+            int distance = distance(word, node.word);
+            if (distance == 0) {
+                if (node.count == 0) {
+                    return;
+                }
+                if (--node.count == 0) {
+                    unused_nodes++;
+                    if (unused_nodes * 2 > nodes) {
+                        rebuild();
+                    }
+                }
+                return;
+            }
+            node = node.child(distance);
+        }
+    }
+
+    /// Returns up to `limit` words within `max_distance` edits of the word, closest first. Words at the same distance are
+    /// ordered alphabetically.
+    public List<String> search(String word, int max_distance, int limit) {
+        var matches = new ArrayList<Match>();
+        if (root == null || limit <= 0) {
+            return List.of();
+        }
+        var pending = new ArrayDeque<BKNode>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            var node = pending.pop();
+            int distance = distance(word, node.word);
+            if (distance <= max_distance && node.count > 0) {
+                matches.add(new Match(node.word, distance));
+            }
+            for (int i = 0; i < node.distances.length; i++) {
+                if (Math.abs(node.distances[i] - distance) <= max_distance) {
+                    pending.push(node.children[i]);
+                }
+            }
+        }
+        matches.sort(Comparator.comparingInt(Match::distance).thenComparing(Match::word));
+        return matches.stream().limit(limit).map(Match::word).toList();
+    }
+
+    private void rebuild() {
+        var words = new ArrayList<BKNode>(nodes - unused_nodes);
+        var pending = new ArrayDeque<BKNode>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            var node = pending.pop();
+            if (node.count > 0) {
+                words.add(node);
+            }
+            for (var child : node.children) {
+                pending.push(child);
+            }
+        }
+        root = null;
+        nodes = 0;
+        unused_nodes = 0;
+        for (var word : words) {
+            for (int i = 0; i < word.count; i++) {
+                add(word.word);
+            }
+        }
+    }
+
+    /// The Levenshtein distance between two strings: the number of single character insertions, deletions and
+    /// substitutions needed to turn one into the other.
+    static int distance(String a, String b) {
+        if (a.length() < b.length()) {
+            var swap = a;
+            a = b;
+            b = swap;
+        }
+        // Only keeps one row of the table, sized by the shorter string
+        var row = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            row[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            int diagonal = row[0];
+            row[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int above = row[j];
+                int substitution = diagonal + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                row[j] = Math.min(substitution, Math.min(above, row[j - 1]) + 1);
+                diagonal = above;
+            }
+        }
+        return row[b.length()];
+    }
+
+    private record Match(String word, int distance) {
+    }
+}
+
+class BKNode {
+    private static final int[] NO_DISTANCES = new int[0];
+    private static final BKNode[] NO_CHILDREN = new BKNode[0];
+
+    final String word;
+    int count = 1;
+    // Each child's distance to this node's word, and the children in the same order
+    int[] distances = NO_DISTANCES;
+    BKNode[] children = NO_CHILDREN;
+
+    BKNode(String word) {
+        this.word = word;
+    }
+
+    BKNode child(int distance) {
+        for (int i = 0; i < distances.length; i++) {
+            if (distances[i] == distance) {
+                return children[i];
+            }
+        }
+        return null;
+    }
+
+    void addChild(int distance, BKNode child) {
+        distances = Arrays.copyOf(distances, distances.length + 1);
+        children = Arrays.copyOf(children, children.length + 1);
+        distances[distances.length - 1] = distance;
+        children[children.length - 1] = child;
+    }
+}
@@ -0,0 +1,208 @@
+package org.example;
+
+import java.util.Optional;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/// A bounded, blocking double-ended queue backed by a fixed ring buffer, safe for any number of producers and consumers.
+///
+/// Every operation holds a single lock for a handful of array and index updates, and blocked threads wait on separate
+/// not-empty/not-full conditions, so a push only wakes one waiting consumer and a pop only wakes one waiting producer.
+/// Null elements are rejected, which lets the `poll_*` methods signal an empty queue with null instead of allocating.
+public class BlockingRingDeque<T> {
+    private final Object[] buffer;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    // Index of the front element
+    private int start = 0;
+    private int len = 0;
+
+    public BlockingRingDeque(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive");
+        buffer = new Object[capacity];
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return len;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int capacity() {
+        // The buffer is never replaced, so this does not require locking
+        return buffer.length;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    private int wrap(int index) {
+        return index >= buffer.length ? index - buffer.length : index;
+    }
+
+    // The following helpers must be called with the lock held, and assume the deque is not full/empty respectively.
+
+    private void insertBack(T item) {
+        buffer[wrap(start + len)] = item;
+        len++;
+        notEmpty.signal();
+    }
+
+    private void insertFront(T item) {
+        start = start == 0 ? buffer.length - 1 : start - 1;
+        buffer[start] = item;
+        len++;
+        notEmpty.signal();
+    }
+
+    @SuppressWarnings("unchecked")
+    private T removeFront() {
+        var item = (T) buffer[start];
+        // Clear the slot so the deque doesn't keep popped values alive
+        buffer[start] = null;
+        start = wrap(start + 1);
+        len--;
+        notFull.signal();
+        return item;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T removeBack() {
+        var index = wrap(start + len - 1);
+        var item = (T) buffer[index];
+        buffer[index] = null;
+        len--;
+        notFull.signal();
+        return item;
+    }
+
+    ///  Returns true if this operation successfully pushed the value
+    public boolean try_push_back(T item) {
+        if (item == null) throw new NullPointerException("BlockingRingDeque does not accept null elements");
+        lock.lock();
+        try {
+            if (len == buffer.length) {
+                return false;
+            }
+            insertBack(item);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void push_back(T item) throws InterruptedException {
+        if (item == null) throw new NullPointerException("BlockingRingDeque does not accept null elements");
+        lock.lockInterruptibly();
+        try {
+            while (len == buffer.length) {
+                notFull.await();
+            }
+            insertBack(item);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    ///  Returns true if this operation successfully pushed the value
+    public boolean try_push_front(T item) {
+        if (item == null) throw new NullPointerException("BlockingRingDeque does not accept null elements");
+        lock.lock();
+        try {
+            if (len == buffer.length) {
+                return false;
+            }
+            insertFront(item);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void push_front(T item) throws InterruptedException {
+        if (item == null) throw new NullPointerException("BlockingRingDeque does not accept null elements");
+        lock.lockInterruptibly();
+        try {
+            while (len == buffer.length) {
+                notFull.await();
+            }
+            insertFront(item);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    ///  Removes and returns the front element, or null if the deque is empty.
+    public T poll_front() {
+        lock.lock();
+        try {
+            return len == 0 ? null : removeFront();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    ///  Removes and returns the back element, or null if the deque is empty.
+    public T poll_back() {
+        lock.lock();
+        try {
+            return len == 0 ? null : removeBack();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Optional<T> try_pop_front() {
+        return Optional.ofNullable(poll_front());
+    }
+
+    public Optional<T> try_pop_back() {
+        return Optional.ofNullable(poll_back());
+    }
+
+    public T pop_front() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (len == 0) {
+                notEmpty.await();
+            }
+            return removeFront();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public T pop_back() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (len == 0) {
+                notEmpty.await();
+            }
+            return removeBack();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            var data = new StringBuilder();
+            for (int i = 0; i < len; i++) {
+                if (i > 0) {
+                    data.append(", ");
+                }
+                data.append(buffer[wrap(start + i)]);
+            }
+            return "BlockingRingDeque{" + "data=[" + data + "], len=" + len + ", capacity=" + buffer.length + '}';
+        } finally {
+            lock.unlock();
+        }
+    }
+}
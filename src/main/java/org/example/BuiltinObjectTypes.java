@@ -0,0 +1,17 @@
+package org.example;
+
+import java.util.Map;
+
+/// The rooms and items with custom behavior of the bundled world.
+public final class BuiltinObjectTypes implements ObjectTypeProvider {
+    @Override
+    public Map<String, Class<? extends Room>> roomTypes() {
+        return Map.of("outdoors", Outdoors.class, "bathroom", Bathroom.class);
+    }
+
+    @Override
+    public Map<String, Class<? extends Item>> itemTypes() {
+        return Map.of("keys", Keys.class, "computer", Computer.class, "oven", Oven.class, "pizza", Pizza.class,
+                "mold", BlackMold.class);
+    }
+}
@@ -1,21 +1,35 @@
 package org.example;
 
 public class CLI {
+    static final String COMMAND_PROMPT = "Please enter the action you want to perform:";
+
     static void main(String[] args) {
-        var terminal_view_controller = new TerminalViewController();
+        run(new TerminalViewController(), () -> {
+        });
+    }
+
+    /// Runs games on the given terminal until the user declines to play again or the input ends.
+    /// `onCommand` is called after every command the game processes.
+    static void run(TerminalViewController terminal_view_controller, Runnable onCommand) {
         while (true) {
             var maybe_instance = ZorkInstance.loadOrCreateNew(terminal_view_controller);
             if (maybe_instance.isEmpty()) {
                 return;
             }
             ZorkInstance instance = maybe_instance.get();
-            while (!terminal_view_controller.WasExitRequested()) {
-                terminal_view_controller.presentTextPrompt("Please enter the action you want to perform:");
-                var line = terminal_view_controller.consumeTextInput();
-                if (line.isEmpty()) {
-                    return;
+            try {
+                while (!terminal_view_controller.WasExitRequested()) {
+                    terminal_view_controller.presentTextPrompt(COMMAND_PROMPT);
+                    var line = terminal_view_controller.consumeTextInput();
+                    if (line.isEmpty()) {
+                        return;
+                    }
+                    instance.advanceGame(terminal_view_controller, line.get());
+                    onCommand.run();
                 }
-                instance.advanceGame(terminal_view_controller, line.get());
+            } finally {
+                // Lets another session play in the save
+                instance.close();
             }
             terminal_view_controller.exitRequested = false;
             terminal_view_controller.presentTextPrompt("Would you like to play again? (y/n)");
@@ -1,7 +1,5 @@
 package org.example;
 
-import tools.jackson.core.JacksonException;
-
 import java.util.ArrayList;
 import java.util.Optional;
 import java.util.regex.Matcher;
@@ -11,6 +9,25 @@ public abstract class Command {
     abstract void execute(ZorkInstance instance) throws CommandException;
 }
 
+/// A command that only acts on the game state, such that running its text again on the same state has the same effect.
+/// These are appended to the save's journal, and replayed onto the save's snapshot when it is loaded.
+abstract class JournaledCommand extends Command {
+}
+
+///  A command that only names its verb, such as "take", which asks the player to complete it.
+class IncompleteCommand extends Command {
+    private final String message;
+
+    IncompleteCommand(String message) {
+        this.message = message;
+    }
+
+    @Override
+    void execute(ZorkInstance instance) {
+        instance.state.controller.presentUrgentMessage(message);
+    }
+}
+
 class ItemAutocompleteHelper {
     public static final String NAME_REGEX = "([a-zA-Z1-9_ ]*)";
 
@@ -47,9 +64,9 @@ class ItemAutocompleteHelper {
 
 class TakeItemCommandParser implements CommandParser {
     private static final Pattern COMMAND_PATTERN = Pattern.compile("^(?:take|pick up|grab)(?: the)? " + ItemAutocompleteHelper.NAME_REGEX + "$");
-    private static final RegexCommandHelper<Command> matcher = new RegexCommandHelper<>("^(?:take|pick up|grab)", COMMAND_PATTERN, "Take what?", match -> {
+    private static final RegexCommandHelper matcher = new RegexCommandHelper("^(?:take|pick up|grab)", COMMAND_PATTERN, "Take what?", match -> {
         var item = match.group(1);
-        return Optional.of(new Command() {
+        return Optional.of(new JournaledCommand() {
             @Override
             void execute(ZorkInstance instance) {
                 var maybe_item = instance.state.lookupItem(item);
@@ -61,11 +78,17 @@ class TakeItemCommandParser implements CommandParser {
                     instance.state.controller.presentUrgentMessage("I can't find the" + item + ".");
                     return;
                 }
-                maybe_item.get().pickUp(instance.state);
+                // Picking an item up may change it
+                instance.state.itemForUpdate(maybe_item.get().getId()).pickUp(instance.state);
             }
         });
     });
 
+    @Override
+    public String[] getVerbs() {
+        return new String[]{"take", "pick", "grab"};
+    }
+
     @Override
     public void registerDirectCompletions(CompletionTrie trie) {
         trie.insertAll("take", "pick up", "grab");
@@ -100,9 +123,9 @@ class TakeItemCommandParser implements CommandParser {
 
 class DropItemCommandParser implements CommandParser {
     private static final Pattern COMMAND_PATTERN = Pattern.compile("^drop(?: the)? " + ItemAutocompleteHelper.NAME_REGEX + "$");
-    private static final RegexCommandHelper<Command> matcher = new RegexCommandHelper<>("^drop", COMMAND_PATTERN, "Drop what?", match -> {
+    private static final RegexCommandHelper matcher = new RegexCommandHelper("^drop", COMMAND_PATTERN, "Drop what?", match -> {
         var item = match.group(1);
-        return Optional.of(new Command() {
+        return Optional.of(new JournaledCommand() {
             @Override
             void execute(ZorkInstance instance) {
                 var maybe_item = instance.state.lookupItem(item);
@@ -114,11 +137,16 @@ class DropItemCommandParser implements CommandParser {
                     instance.state.controller.presentUrgentMessage("I can't find the" + item + ".");
                     return;
                 }
-                maybe_item.get().drop(instance.state);
+                instance.state.itemForUpdate(maybe_item.get().getId()).drop(instance.state);
             }
         });
     });
 
+    @Override
+    public String[] getVerbs() {
+        return new String[]{"drop"};
+    }
+
     @Override
     public void registerDirectCompletions(CompletionTrie trie) {
         trie.insertAll("drop");
@@ -153,9 +181,9 @@ class DropItemCommandParser implements CommandParser {
 
 class GoCommandParser implements CommandParser {
     private static final Pattern COMMAND_PATTERN = Pattern.compile("^(?:go|move)(?: to(?: the)?)? " + ItemAutocompleteHelper.NAME_REGEX + "$");
-    private static final RegexCommandHelper<Command> matcher = new RegexCommandHelper<>("^(?:go|move)", COMMAND_PATTERN, "Go where?", match -> {
+    private static final RegexCommandHelper matcher = new RegexCommandHelper("^(?:go|move)", COMMAND_PATTERN, "Go where?", match -> {
         var place = match.group(1);
-        return Optional.of(new Command() {
+        return Optional.of(new JournaledCommand() {
             @Override
             void execute(ZorkInstance instance) {
                 instance.state.goTo(place);
@@ -163,6 +191,11 @@ class GoCommandParser implements CommandParser {
         });
     });
 
+    @Override
+    public String[] getVerbs() {
+        return new String[]{"go", "move"};
+    }
+
     @Override
     public void registerDirectCompletions(CompletionTrie trie) {
         trie.insertAll("go", "move");
@@ -205,6 +238,50 @@ class GoCommandParser implements CommandParser {
     }
 }
 
+class UndoCommandParser implements CommandParser {
+    @Override
+    public Optional<Command> parse(String text) {
+        var forward = switch (text) {
+            case "undo" -> false;
+            case "redo" -> true;
+            default -> null;
+        };
+        if (forward == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new Command() {
+            @Override
+            void execute(ZorkInstance instance) {
+                instance.rewind(forward);
+            }
+        });
+    }
+
+    @Override
+    public String[] getVerbs() {
+        return new String[]{"undo", "redo"};
+    }
+
+    @Override
+    public void registerDirectCompletions(CompletionTrie trie) {
+        trie.insertAll("undo", "redo");
+    }
+
+    @Override
+    public void autoComplete(GameState context, ArrayList<String> output, String text) {
+    }
+
+    @Override
+    public String getName() {
+        return "undo";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Take back your last action, \"redo\" to do it again";
+    }
+}
+
 class LookCommandParser implements CommandParser {
     @Override
     public Optional<Command> parse(String text) {
@@ -219,6 +296,11 @@ class LookCommandParser implements CommandParser {
         });
     }
 
+    @Override
+    public String[] getVerbs() {
+        return new String[]{"look"};
+    }
+
     @Override
     public void registerDirectCompletions(CompletionTrie trie) {
         trie.insertAll("look");
@@ -240,22 +322,37 @@ class LookCommandParser implements CommandParser {
 }
 
 class MapCommandParser implements CommandParser {
+    private static final Pattern COMMAND_PATTERN = Pattern.compile("^map(?: (full|\\d{1,9}))?$");
+
     @Override
     public Optional<Command> parse(String text) {
-        if (!text.equals("map")) {
+        var matcher = COMMAND_PATTERN.matcher(text);
+        if (!matcher.matches()) {
             return Optional.empty();
         }
+        var size = matcher.group(1);
         return Optional.of(new Command() {
             @Override
             void execute(ZorkInstance instance) {
-                instance.state.mapMessage();
+                if (size == null) {
+                    instance.state.mapMessage(MapRenderer.DEFAULT_VIEWPORT_RADIUS);
+                } else if (size.equals("full")) {
+                    instance.state.mapMessage();
+                } else {
+                    instance.state.mapMessage(Integer.parseInt(size));
+                }
             }
         });
     }
 
+    @Override
+    public String[] getVerbs() {
+        return new String[]{"map"};
+    }
+
     @Override
     public void registerDirectCompletions(CompletionTrie trie) {
-        trie.insertAll("map");
+        trie.insertAll("map", "map full");
     }
 
     @Override
@@ -269,7 +366,7 @@ class MapCommandParser implements CommandParser {
 
     @Override
     public String getDescription() {
-        return "Show the map";
+        return "Show the map around you, \"map 5\" to see further or \"map full\" for the whole map";
     }
 }
 
@@ -287,6 +384,11 @@ class HelpCommandParser implements CommandParser {
         });
     }
 
+    @Override
+    public String[] getVerbs() {
+        return new String[]{"help"};
+    }
+
     @Override
     public void registerDirectCompletions(CompletionTrie trie) {
         trie.insertAll("help");
@@ -321,6 +423,11 @@ class ExitCommandParser implements CommandParser {
         });
     }
 
+    @Override
+    public String[] getVerbs() {
+        return new String[]{"exit"};
+    }
+
     @Override
     public void registerDirectCompletions(CompletionTrie trie) {
         trie.insertAll("exit");
@@ -346,19 +453,20 @@ class SaveCommandParser implements CommandParser {
     private final static Pattern LOAD_PATTERN = Pattern.compile("^load " + ItemAutocompleteHelper.NAME_REGEX + "$");
     private final static Pattern DELETE_SAVE_PATTERN = Pattern.compile("^delete save " + ItemAutocompleteHelper.NAME_REGEX + "$");
 
+    @Override
+    public String[] getVerbs() {
+        return new String[]{"save", "load", "delete"};
+    }
+
     @Override
     public void registerDirectCompletions(CompletionTrie trie) {
         trie.insertAll("save", "save as", "delete save", "load");
     }
 
     private void autoCompleteSaveNames(ArrayList<String> output, String text, Matcher matcher) {
-        var save_names = SaveManager.listSaveNames();
         var before_name = text.substring(0, matcher.start(1));
         var name = matcher.group(1);
-        for (var save_name : save_names) {
-            if (!save_name.startsWith(name)) {
-                continue;
-            }
+        for (var save_name : SaveManager.listSaveNamesStartingWith(name)) {
             if (save_name.length() == name.length()) {
                 continue;
             }
@@ -380,75 +488,74 @@ class SaveCommandParser implements CommandParser {
 
     @Override
     public Optional<Command> parse(String text) {
+        // Only run the pattern that can possibly match, the rest of the grammar is handled by the switch below
         var save_as_matcher = SAVE_AS_PATTERN.matcher(text);
-        if (save_as_matcher.matches()) {
+        if (text.startsWith("save as ") && save_as_matcher.matches()) {
             var name = save_as_matcher.group(1);
             return Optional.of(new Command() {
                 @Override
-                void execute(ZorkInstance instance) {
+                void execute(ZorkInstance instance) throws CommandException {
+                    instance.checkSlotAvailable(name);
                     SaveManager.saveState(name, instance.state);
                 }
             });
         }
         var load_matcher = LOAD_PATTERN.matcher(text);
-        if (load_matcher.matches()) {
+        if (text.startsWith("load ") && load_matcher.matches()) {
             var name = load_matcher.group(1);
             return Optional.of(new Command() {
                 @Override
                 void execute(ZorkInstance instance) throws CommandException {
-                    try {
-                        instance.state = SaveManager.loadState(name);
-                    } catch (JacksonException e) {
-                        throw new CommandException("Failed to load save file: " + name);
-                    }
+                    instance.load(name);
                 }
             });
         }
         var delete_matcher = DELETE_SAVE_PATTERN.matcher(text);
-        if (delete_matcher.matches()) {
+        if (text.startsWith("delete save ") && delete_matcher.matches()) {
             var name = delete_matcher.group(1);
             return Optional.of(new Command() {
                 @Override
-                void execute(ZorkInstance instance) {
-                    var save_file_path = SaveManager.pathForSaveName(name);
-                    var _ = save_file_path.toFile().delete();
+                void execute(ZorkInstance instance) throws CommandException {
+                    instance.checkSlotAvailable(name);
+                    SaveManager.deleteSave(name);
                 }
             });
         }
         return switch (text.trim()) {
             case "save as" -> Optional.of(new Command() {
                 @Override
-                void execute(ZorkInstance instance) {
+                void execute(ZorkInstance instance) throws CommandException {
                     instance.state.controller.presentMessage("Pick a save file to overwrite, or enter the name of the save file to create");
-                    var save_names = SaveManager.listSaveNames();
-                    var selected = instance.state.controller.presentTextSelectionListWithPrompt(save_names, "Create new save");
-                    SaveManager.saveState(selected, instance.state);
+                    var saves = SaveManager.listSaves();
+                    var labels = saves.stream().map(SaveSummary::toString).toList();
+                    var selected = instance.state.controller.presentTextSelectionListWithPrompt(labels, "Create new save");
+                    var name = SaveSummary.picked(saves, labels, selected).map(SaveSummary::name).orElse(selected);
+                    instance.checkSlotAvailable(name);
+                    SaveManager.saveState(name, instance.state);
                 }
             });
             case "load" -> Optional.of(new Command() {
                 @Override
-                void execute(ZorkInstance instance) {
+                void execute(ZorkInstance instance) throws CommandException {
                     instance.state.controller.presentMessage("Pick a save file to load");
-                    var save_names = SaveManager.listSaveNames();
-                    var selected = instance.state.controller.presentSelectionList(save_names);
+                    var selected = instance.state.controller.presentSelectionList(SaveManager.listSaves());
                     if (selected.isEmpty()) {
                         return;
                     }
-                    instance.state = SaveManager.loadState(selected.get());
+                    instance.load(selected.get().name());
                 }
             });
             case "delete save" -> Optional.of(new Command() {
                 @Override
-                void execute(ZorkInstance instance) {
+                void execute(ZorkInstance instance) throws CommandException {
                     instance.state.controller.presentMessage("Pick a save file to delete");
-                    var save_names = SaveManager.listSaveNames();
-                    var selected = instance.state.controller.presentSelectionList(save_names);
+                    var selected = instance.state.controller.presentSelectionList(SaveManager.listSaves());
                     if (selected.isEmpty()) {
                         return;
                     }
 
-                    var save_file_path = SaveManager.pathForSaveName(selected.get());
-                    var _ = save_file_path.toFile().delete();
+                    instance.checkSlotAvailable(selected.get().name());
+                    SaveManager.deleteSave(selected.get().name());
                 }
             });
             case "save" -> Optional.of(new Command() {
@@ -474,9 +581,9 @@ class SaveCommandParser implements CommandParser {
 
 class UseItemCommandParser implements CommandParser {
     private static final Pattern COMMAND_PATTERN = Pattern.compile("^use(?: the)? " + ItemAutocompleteHelper.NAME_REGEX + "$");
-    private static final RegexCommandHelper<Command> matcher = new RegexCommandHelper<>("^use", COMMAND_PATTERN, "Use what?", match -> {
+    private static final RegexCommandHelper matcher = new RegexCommandHelper("^use", COMMAND_PATTERN, "Use what?", match -> {
         var item = match.group(1);
-        return Optional.of(new Command() {
+        return Optional.of(new JournaledCommand() {
             @Override
             void execute(ZorkInstance instance) {
                 instance.state.useItem(item);
@@ -484,6 +591,11 @@ class UseItemCommandParser implements CommandParser {
         });
     });
 
+    @Override
+    public String[] getVerbs() {
+        return new String[]{"use"};
+    }
+
     @Override
     public void registerDirectCompletions(CompletionTrie trie) {
         trie.insertAll("use");
@@ -1,6 +1,7 @@
 package org.example;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,6 +20,10 @@ interface CommandParser {
 
     void registerDirectCompletions(CompletionTrie trie);
 
+    /// The leading words of every command this parser accepts, used to route input to this parser.
+    /// Each verb may only be claimed by a single parser.
+    String[] getVerbs();
+
     String getName();
 
     String getDescription();
@@ -26,6 +31,10 @@ interface CommandParser {
 
 public class CommandRegistry {
     public final static CommandRegistry INSTANCE = new CommandRegistry();
+    // Upper bound on the number of direct completions offered for one input
+    static final int MAX_DIRECT_COMPLETIONS = 50;
+    // Upper bound on the number of corrections suggested for a misspelled command
+    static final int MAX_CORRECTIONS = 3;
 
     static {
         CommandRegistry.registerParser(new HelpCommandParser());
@@ -35,12 +44,16 @@ public class CommandRegistry {
         CommandRegistry.registerParser(new UseItemCommandParser());
         CommandRegistry.registerParser(new DropItemCommandParser());
         CommandRegistry.registerParser(new GoCommandParser());
+        CommandRegistry.registerParser(new UndoCommandParser());
         CommandRegistry.registerParser(new SaveCommandParser());
         CommandRegistry.registerParser(new ExitCommandParser());
     }
 
     private final ArrayList<CommandParser> commandParsers = new ArrayList<>();
     private final CompletionTrie completionTrie = new CompletionTrie();
+    // Maps the leading word of a command to the only parser that can accept it
+    private final HashMap<String, CommandParser> verbIndex = new HashMap<>();
+    private final BKTree verbTree = new BKTree();
 
     private CommandRegistry() {
     }
@@ -67,10 +80,39 @@ public class CommandRegistry {
     private static void registerParser(CommandParser parser) {
         INSTANCE.commandParsers.add(parser);
         parser.registerDirectCompletions(INSTANCE.completionTrie);
+        for (var verb : parser.getVerbs()) {
+            var previous = INSTANCE.verbIndex.putIfAbsent(verb, parser);
+            if (previous != null) {
+                throw new IllegalStateException("Verb \"" + verb + "\" is claimed by both " + previous.getClass().getSimpleName() + " and " + parser.getClass().getSimpleName());
+            }
+            INSTANCE.verbTree.add(verb);
+        }
+    }
+
+    /// Returns the first word of the text, skipping leading whitespace the same way `String.trim` does.
+    static String leadingVerb(String text) {
+        var start = leadingVerbStart(text);
+        return text.substring(start, leadingVerbEnd(text, start));
+    }
+
+    private static int leadingVerbStart(String text) {
+        int start = 0;
+        while (start < text.length() && text.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int leadingVerbEnd(String text, int start) {
+        int end = start;
+        while (end < text.length() && text.charAt(end) > ' ') {
+            end++;
+        }
+        return end;
     }
 
     public static List<String> autocomplete(GameState context, String text) {
-        var results = INSTANCE.completionTrie.search(text);
+        var results = INSTANCE.completionTrie.search(text, MAX_DIRECT_COMPLETIONS);
         if (results.isEmpty()) {
             for (final var parser : INSTANCE.commandParsers) {
                 parser.autoComplete(context, results, text);
@@ -79,14 +121,49 @@ public class CommandRegistry {
         return results;
     }
 
-    public static Optional<Command> parse(String text) {
-        for (final var parser : INSTANCE.commandParsers) {
-            var command = parser.parse(text);
-            if (command.isEmpty()) {
-                continue;
+    /// Suggests commands the player may have meant to type, by correcting a misspelled verb and item or room name.
+    /// Only corrections that parse are suggested, closest first.
+    public static List<String> suggestCorrections(GameState context, String text) {
+        // Split the text where its verb ends before lowercasing, as case folding can change the length of a string
+        var start = leadingVerbStart(text);
+        var end = leadingVerbEnd(text, start);
+        var verb = text.substring(start, end).toLowerCase();
+        var argument = text.substring(end).strip().toLowerCase();
+        var verbs = INSTANCE.verbIndex.containsKey(verb) ? List.of(verb) : INSTANCE.verbTree.search(verb, maxEdits(verb), MAX_CORRECTIONS);
+        if (verbs.isEmpty()) {
+            return List.of();
+        }
+        List<String> arguments = List.of(argument);
+        if (!argument.isEmpty()) {
+            var names = context.nameIndex().search(argument, maxEdits(argument), MAX_CORRECTIONS);
+            if (!names.isEmpty()) {
+                arguments = names;
+            }
+        }
+
+        var suggestions = new ArrayList<String>();
+        for (var candidate_verb : verbs) {
+            for (var candidate_argument : arguments) {
+                var candidate = candidate_argument.isEmpty() ? candidate_verb : candidate_verb + " " + candidate_argument;
+                if (suggestions.size() < MAX_CORRECTIONS && parse(candidate).isPresent()) {
+                    suggestions.add(candidate);
+                }
             }
-            return command;
         }
-        return Optional.empty();
+        return suggestions;
+    }
+
+    // Short words are allowed fewer edits, as almost every short word is a couple of edits away from another
+    private static int maxEdits(String word) {
+        return word.length() <= 3 ? 1 : 2;
+    }
+
+    /// Routes the text to the parser owning its leading verb, so each line is matched against a single grammar.
+    public static Optional<Command> parse(String text) {
+        var parser = INSTANCE.verbIndex.get(leadingVerb(text));
+        if (parser == null) {
+            return Optional.empty();
+        }
+        return parser.parse(text);
     }
 }
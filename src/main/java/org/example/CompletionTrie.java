@@ -1,16 +1,47 @@
 package org.example;
 
-import java.text.CharacterIterator;
-import java.text.StringCharacterIterator;
 import java.util.ArrayList;
-import java.util.Optional;
-import java.util.TreeMap;
+import java.util.Arrays;
 
+/// A radix trie over a set of words, used to complete prefixes.
+///
+/// Chains of nodes with a single child are compressed into one node labelled with the whole chain, and every node keeps
+/// its children in arrays sorted by the first character of their label. Memory is linear in the total length of the
+/// words, and looking up a prefix is a binary search per node on the way down. Completions are produced in
+/// lexicographic order, and `search(prefix, limit)` stops walking the trie once it has found `limit` of them.
 public class CompletionTrie {
-    final TrieNode root = new TrieNode("");
+    final RadixNode root = new RadixNode("");
+    private int size = 0;
 
     void insert(String word) {
-        root.put(new StringCharacterIterator(word));
+        var node = root;
+        int index = 0;
+        while (index < word.length()) {
+            int child_index = node.find(word.charAt(index));
+            if (child_index < 0) {
+                var leaf = new RadixNode(word.substring(index));
+                leaf.isEnd = true;
+                node.insertChild(-child_index - 1, leaf);
+                size++;
+                return;
+            }
+            var child = node.children[child_index];
+            int common = commonPrefixLength(child.label, word, index);
+            if (common < child.label.length()) {
+                // The word diverges inside the child's label, split it so the shared part becomes its own node
+                var shared = new RadixNode(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                shared.insertChild(0, child);
+                node.children[child_index] = shared;
+                child = shared;
+            }
+            node = child;
+            index += common;
+        }
+        if (!node.isEnd) {
+            node.isEnd = true;
+            size++;
+        }
     }
 
     void insertAll(String... words) {
@@ -20,84 +51,163 @@ public class CompletionTrie {
     }
 
     void delete(String word) {
-        root.remove(new StringCharacterIterator(word));
+        RadixNode parent = null;
+        int parent_index = -1;
+        var node = root;
+        int index = 0;
+        while (index < word.length()) {
+            int child_index = node.find(word.charAt(index));
+            if (child_index < 0) {
+                return;
+            }
+            var child = node.children[child_index];
+            if (!word.startsWith(child.label, index)) {
+                return;
+            }
+            parent = node;
+            parent_index = child_index;
+            node = child;
+            index += child.label.length();
+        }
+        if (!node.isEnd) {
+            return;
+        }
+        node.isEnd = false;
+        size--;
+        if (node == root) {
+            return;
+        }
+        // Restore the invariant that only the root and word ends may have fewer than two children
+        if (node.children.length == 0) {
+            parent.removeChild(parent_index);
+            if (parent != root && !parent.isEnd && parent.children.length == 1) {
+                parent.mergeWithOnlyChild();
+            }
+        } else if (node.children.length == 1) {
+            node.mergeWithOnlyChild();
+        }
     }
 
-    ArrayList<String> search(String word) {
-        return root.get(word);
+    /// The number of words in the trie.
+    int size() {
+        return size;
     }
-}
 
-class TrieNode {
-    final TreeMap<Character, TrieNode> children;
-    boolean isEnd = false;
-    final String prefix;
-
-    public TrieNode(String prefix) {
-        this.children = new TreeMap<>();
-        this.prefix = prefix;
+    /// Returns every word starting with the prefix, including the prefix itself if it is a word.
+    ArrayList<String> search(String prefix) {
+        return search(prefix, Integer.MAX_VALUE);
     }
 
-    public void put(CharacterIterator text) {
-        var current_node = this;
-        StringBuilder prefix = new StringBuilder();
-        var character = text.current();
-        while (character != CharacterIterator.DONE) {
-            prefix.append(character);
-            if (!current_node.children.containsKey(character)) {
-                current_node.children.put(character, new TrieNode(prefix.toString()));
-            }
-            current_node = current_node.children.get(character);
-            character = text.next();
+    /// Returns the first `limit` words starting with the prefix, in lexicographic order. Only the part of the trie
+    /// leading to those words is visited, so the cost doesn't depend on how many words share the prefix.
+    ArrayList<String> search(String prefix, int limit) {
+        var result = new ArrayList<String>(Math.min(limit, 16));
+        if (limit <= 0) {
+            return result;
         }
-        current_node.isEnd = true;
-    }
-
-    public ArrayList<String> get(String prefix) {
-        var current_node = this;
-        for (var character : prefix.toCharArray()) {
-            if (!current_node.children.containsKey(character)) {
-                return new ArrayList<>();
+        var node = root;
+        var path = new StringBuilder(prefix.length() + 16);
+        int index = 0;
+        while (index < prefix.length()) {
+            int child_index = node.find(prefix.charAt(index));
+            if (child_index < 0) {
+                return result;
             }
-            current_node = current_node.children.get(character);
-        }
-        ArrayList<String> result = new ArrayList<>();
-        if (current_node.isEnd) {
-            result.add(current_node.prefix);
+            node = node.children[child_index];
+            // The prefix may end inside the label, in which case every word below still matches
+            int compared = Math.min(node.label.length(), prefix.length() - index);
+            if (!prefix.regionMatches(index, node.label, 0, compared)) {
+                return result;
+            }
+            path.append(node.label);
+            index += node.label.length();
         }
-        current_node.getAllChildWords(result);
+        node.collect(path, limit, result);
         return result;
     }
 
-    public Optional<String> remove(CharacterIterator word) {
-        var character = word.current();
-        if (character == CharacterIterator.DONE) {
-            if (this.isEnd) {
-                this.isEnd = false;
-                return Optional.of(this.prefix);
-            }
-            return Optional.empty();
-        }
-        if (!this.children.containsKey(character)) {
-            return Optional.empty();
+    private static int commonPrefixLength(String label, String word, int offset) {
+        int length = Math.min(label.length(), word.length() - offset);
+        int common = 0;
+        while (common < length && label.charAt(common) == word.charAt(offset + common)) {
+            common++;
         }
-        var child = this.children.get(character);
-        word.next();
-        var result = child.remove(word);
-        if (result.isPresent()) {
-            if (child.children.isEmpty()) {
-                this.children.remove(character);
-            }
+        return common;
+    }
+}
+
+class RadixNode {
+    private static final RadixNode[] NO_CHILDREN = new RadixNode[0];
+    private static final char[] NO_KEYS = new char[0];
+
+    // The characters on the edge leading to this node
+    String label;
+    boolean isEnd = false;
+    // The first character of every child's label, sorted, and the children in the same order
+    char[] keys = NO_KEYS;
+    RadixNode[] children = NO_CHILDREN;
+
+    RadixNode(String label) {
+        this.label = label;
+    }
+
+    /// Returns the index of the child whose label starts with the character, or `-(insertion point) - 1`.
+    int find(char key) {
+        return Arrays.binarySearch(keys, key);
+    }
+
+    void insertChild(int index, RadixNode child) {
+        var new_keys = new char[keys.length + 1];
+        var new_children = new RadixNode[children.length + 1];
+        System.arraycopy(keys, 0, new_keys, 0, index);
+        System.arraycopy(children, 0, new_children, 0, index);
+        new_keys[index] = child.label.charAt(0);
+        new_children[index] = child;
+        System.arraycopy(keys, index, new_keys, index + 1, keys.length - index);
+        System.arraycopy(children, index, new_children, index + 1, children.length - index);
+        keys = new_keys;
+        children = new_children;
+    }
+
+    void removeChild(int index) {
+        if (children.length == 1) {
+            keys = NO_KEYS;
+            children = NO_CHILDREN;
+            return;
         }
-        return result;
+        var new_keys = new char[keys.length - 1];
+        var new_children = new RadixNode[children.length - 1];
+        System.arraycopy(keys, 0, new_keys, 0, index);
+        System.arraycopy(children, 0, new_children, 0, index);
+        System.arraycopy(keys, index + 1, new_keys, index, keys.length - index - 1);
+        System.arraycopy(children, index + 1, new_children, index, children.length - index - 1);
+        keys = new_keys;
+        children = new_children;
+    }
+
+    // Absorbs the only child into this node, which must not be a word end itself
+    void mergeWithOnlyChild() {
+        var child = children[0];
+        label = label + child.label;
+        isEnd = child.isEnd;
+        keys = child.keys;
+        children = child.children;
     }
 
-    public void getAllChildWords(ArrayList<String> result) {
-        for (var child : this.children.values()) {
-            if (child.isEnd) {
-                result.add(child.prefix);
+    // Adds the words in this subtree to the result in lexicographic order, until it holds `limit` words. `path` holds
+    // the characters leading up to and including this node's label, and is restored before returning.
+    void collect(StringBuilder path, int limit, ArrayList<String> result) {
+        if (isEnd) {
+            result.add(path.toString());
+        }
+        for (var child : children) {
+            if (result.size() >= limit) {
+                return;
             }
-            child.getAllChildWords(result);
+            int length = path.length();
+            path.append(child.label);
+            child.collect(path, limit, result);
+            path.setLength(length);
         }
     }
 }
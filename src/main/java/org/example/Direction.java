@@ -3,7 +3,16 @@ package org.example;
 import java.util.Optional;
 
 public enum Direction {
-    North, East, South, West;
+    North(-1, 0), East(0, 1), South(1, 0), West(0, -1);
+
+    // The change in map row/column when moving in this direction
+    public final int rowOffset;
+    public final int columnOffset;
+
+    Direction(int rowOffset, int columnOffset) {
+        this.rowOffset = rowOffset;
+        this.columnOffset = columnOffset;
+    }
 
     public static Optional<Direction> fromString(String text) {
         Direction direction;
@@ -0,0 +1,15 @@
+package org.example;
+
+/// What about a game changed, see `GameState.registerUpdateHook`.
+public enum GameChange {
+    /// The player is in another room
+    CurrentRoom,
+    /// The player's items changed
+    Inventory,
+    /// Items were put into or taken out of rooms
+    RoomItems,
+    /// Rooms were added or removed, or exits changed
+    Rooms,
+    /// Items were added, removed or renamed
+    Items
+}
@@ -0,0 +1,85 @@
+package org.example;
+
+import java.util.ArrayDeque;
+
+/// The versions of a game before each command that changed it, for `undo` and `redo`.
+///
+/// Every version is a snapshot of the game, which shares everything but what the commands changed since with the
+/// versions next to it. The history is bounded by an estimate of the heap those changes retain rather than by a number
+/// of commands, so a long history of walking around costs as much as a short one of rearranging the whole world. The
+/// oldest versions are dropped first.
+class GameHistory {
+    /// Set `-Dzork.undoMemoryMB=64` to keep more history per game.
+    static final long MAX_BYTES = Long.getLong("zork.undoMemoryMB", 16) * 1024 * 1024;
+
+    private final long max_bytes;
+    // Newest first. Every version's size is what it doesn't share with the version after it, or with the game.
+    private final ArrayDeque<Version> undo = new ArrayDeque<>();
+    private final ArrayDeque<Version> redo = new ArrayDeque<>();
+    private long retained_bytes = 0;
+
+    GameHistory() {
+        this(MAX_BYTES);
+    }
+
+    GameHistory(long max_bytes) {
+        this.max_bytes = max_bytes;
+    }
+
+    private record Version(GameState snapshot, long bytes) {
+    }
+
+    /// Records the snapshot the game took before running a command that changed it. Commands undone before are lost.
+    void recorded(GameState before, GameState game) {
+        redo.forEach(version -> retained_bytes -= version.bytes());
+        redo.clear();
+        push(undo, before, game);
+    }
+
+    /// Rewinds the game to the version before its last command, returning false if there is none.
+    boolean undo(GameState game) {
+        return step(undo, redo, game);
+    }
+
+    /// Runs the last undone command again, by going back to the version that followed it. Returns false if there is none.
+    boolean redo(GameState game) {
+        return step(redo, undo, game);
+    }
+
+    int undoDepth() {
+        return undo.size();
+    }
+
+    long retainedBytes() {
+        return retained_bytes;
+    }
+
+    void clear() {
+        undo.clear();
+        redo.clear();
+        retained_bytes = 0;
+    }
+
+    private boolean step(ArrayDeque<Version> from, ArrayDeque<Version> to, GameState game) {
+        var target = from.pollFirst();
+        if (target == null) {
+            return false;
+        }
+        retained_bytes -= target.bytes();
+        var current = game.snapshot();
+        game.restore(target.snapshot());
+        push(to, current, game);
+        return true;
+    }
+
+    private void push(ArrayDeque<Version> versions, GameState snapshot, GameState game) {
+        var version = new Version(snapshot, snapshot.bytesNotSharedWith(game));
+        versions.addFirst(version);
+        retained_bytes += version.bytes();
+        // The version just pushed is always kept, the game can be rewound by at least one command
+        while (retained_bytes > max_bytes && undo.size() + redo.size() > 1) {
+            var oldest = !undo.isEmpty() && undo.peekLast() != version ? undo.pollLast() : redo.pollLast();
+            retained_bytes -= oldest.bytes();
+        }
+    }
+}
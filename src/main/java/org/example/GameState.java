@@ -1,16 +1,38 @@
 package org.example;
 
+import com.fasterxml.jackson.annotation.JsonAlias;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.annotation.JsonDeserialize;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.function.Consumer;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
-// All state that requires overridden methods to work(items, rooms) is stored in a Typed* class, which is
-// loaded into a type-erased map at runtime
+// Rooms and items with custom behavior are subclasses of `Room` and `Item`, which are saved with a type id and looked up
+// in `ObjectTypes` when loading
+//
+// The rooms and items are kept in persistent maps, which `snapshot` shares with an immutable copy of the game instead of
+// copying them. Rooms and items are only copied once the game modifies them after a snapshot(see `roomForUpdate`), the
+// player is copied by every snapshot right away.
+//
+// In a streamed world(see `WorldRegions`) the maps only hold the rooms and items of the loaded regions. `room` and
+// `item` load the region of a room or item on demand, and the player's surroundings are loaded as it moves. Which
+// regions are loaded, and the regions the game wrote back, are part of the game, so snapshots and undo see the world
+// as it was. The name index used for corrections only knows the loaded names.
+@JsonPropertyOrder({"world"})
 public class GameState {
     @JsonIgnore
-    private final ArrayList<Consumer<GameState>> updateHooks = new ArrayList<>();
+    private final ArrayList<UpdateHook> updateHooks = new ArrayList<>();
+    // Changes made since the hooks were last run
+    @JsonIgnore
+    private final EnumSet<GameChange> pending_changes = EnumSet.noneOf(GameChange.class);
     @JsonIgnore
     public boolean isExitRequested = false;
     @JsonIgnore
@@ -19,76 +41,818 @@ public class GameState {
     public String save_name;
     @JsonIgnore
     public MapLayout layout;
-    @JsonProperty("typed_rooms")
-    TypedRooms typed_rooms;
-    @JsonProperty("generic_rooms")
-    HashMap<String, Room> generic_rooms;
-    @JsonIgnore
-    final
-    HashMap<String, Room> loaded_rooms = new HashMap<>();
-    @JsonProperty("typed_items")
-    TypedItems typed_items;
-    @JsonProperty("inert_items")
-    HashMap<String, Item> inert_items;
-    @JsonIgnore
-    final
-    HashMap<String, Item> loaded_items = new HashMap<>();
+    @JsonIgnore
+    private MapRenderer map_renderer;
+    // Lowercase item and room names, for suggesting corrections to misspelled commands. Built on first use, as indexing
+    // a large world takes longer than loading it, and most commands are spelled right.
+    @JsonIgnore
+    private BKTree name_index = null;
+    // Item ids by lowercase name and alias, for looking up items the way the player refers to them
+    @JsonIgnore
+    private PersistentMap<String, String> items_by_name = PersistentMap.empty();
+    // The name each item/room is currently indexed under, by id
+    @JsonIgnore
+    private PersistentMap<String, String> indexed_item_names = PersistentMap.empty();
+    @JsonIgnore
+    private PersistentMap<String, String> indexed_room_names = PersistentMap.empty();
+    // Saves from before type ids named these "generic_rooms" and "inert_items"
+    @JsonProperty("rooms")
+    @JsonAlias("generic_rooms")
+    PersistentMap<String, Room> loaded_rooms = PersistentMap.empty();
+    @JsonProperty("items")
+    @JsonAlias("inert_items")
+    PersistentMap<String, Item> loaded_items = PersistentMap.empty();
+    // The rooms and items with custom behavior of saves from before type ids, added to the others by the update hooks
+    @JsonIgnore
+    private Map<String, Room> legacy_rooms = Map.of();
+    @JsonIgnore
+    private Map<String, Item> legacy_items = Map.of();
+    // The regions of a streamed world, null for a world that is loaded as a whole
+    @JsonIgnore
+    WorldRegions regions;
+    // The regions whose rooms and items are loaded
+    @JsonProperty("loaded_regions")
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    PersistentSet<Integer> loaded_regions = PersistentSet.empty();
+    // The version of the regions the game modified, as it wrote them back when unloading them
+    @JsonIgnore
+    private PersistentMap<Integer, WorldRegions.Written> written_regions = PersistentMap.empty();
+    // The region items were last unloaded with, for items moved out of the region they were compiled into
+    @JsonProperty("moved_items")
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private PersistentMap<String, Integer> moved_items = PersistentMap.empty();
+    // Item ids by the lowercase name they were unloaded with, for names the index doesn't know them by
+    @JsonProperty("renamed_items")
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private PersistentMap<String, String> renamed_items = PersistentMap.empty();
+    // The loaded regions from the one the player was least recently near to the most recent one, with the owner their
+    // rooms and items were loaded with. A region whose rooms and items all still have that owner wasn't modified.
+    @JsonIgnore
+    private final LinkedHashMap<Integer, Object> recent_regions = new LinkedHashMap<>(16, 0.75f, true);
+    // Marks the rooms and items this game may modify in place, every other one is shared with a snapshot or copy of the
+    // game
+    @JsonIgnore
+    private Object owner = new Object();
+    // Snapshots share their rooms and items with the game, and must not be modified
+    @JsonIgnore
+    private boolean frozen = false;
+    // The map layout keeps the rooms by reference, this always shows it the current ones
+    @JsonIgnore
+    private final Map<String, Room> rooms_view = new AbstractMap<>() {
+        @Override
+        public Set<Entry<String, Room>> entrySet() {
+            return loaded_rooms.entrySet();
+        }
+
+        @Override
+        public Room get(Object key) {
+            return loaded_rooms.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return loaded_rooms.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return loaded_rooms.size();
+        }
+    };
     @JsonProperty("player")
     Player player;
+    // Identifies this game's history of commands, a save's journal is only replayed onto a snapshot of the same game
+    @JsonProperty("journal_id")
+    String journal_id;
+    // How many journaled commands this game has run
+    @JsonProperty("journal_sequence")
+    long journal_sequence = 0;
+    // The journal sequence of the latest snapshot saved into this game's own slot, which its journal is replayed onto
+    @JsonIgnore
+    long saved_sequence = 0;
 
     private GameState() {
     }
 
 
-    /// Registers a function that shall be called whenever the game state is modified
-    public void registerUpdateHook(Consumer<GameState> hook) {
-        updateHooks.add(hook);
+    /// Takes an immutable snapshot of the game, for reading it on another thread, such as to save it, while this game
+    /// goes on. The snapshot shares the rooms, items and indexes with this game, so taking it doesn't depend on the size
+    /// of the world. It has no map layout, update hooks, controller or save name.
+    public GameState snapshot() {
+        var snapshot = new GameState();
+        snapshot.shareWith(this);
+        snapshot.frozen = true;
+        // Every room and item is copied once this game first modifies it, the player right away
+        owner = new Object();
+        player = player.copy();
+        return snapshot;
+    }
+
+    /// Creates a new game from a snapshot, or from a game that isn't modified anymore, such as the initial world. The
+    /// copy shares everything with the game until the copy modifies it. A game that is still being played is
+    /// snapshotted first.
+    GameState copy() {
+        var source = frozen ? this : snapshot();
+        var copy = new GameState();
+        copy.shareWith(source);
+        copy.player = source.player.copy();
+        copy.layout = source.layout == null ? new MapLayout(copy.rooms_view) : new MapLayout(source.layout, copy.rooms_view);
+        if (copy.regions != null) {
+            copy.recent_regions.putAll(source.recent_regions);
+            copy.syncRecentRegions();
+        }
+        return copy;
+    }
+
+    /// Marks a game as no longer being modified, so it can be copied without a snapshot first.
+    void freeze() {
+        frozen = true;
+    }
+
+    /// Rewinds the game to a snapshot it took earlier, such as to undo commands. Only the rooms that differ are put back
+    /// on the map, it is laid out again if rooms or exits were added or removed in between. Only what differs is reported
+    /// to the update hooks.
+    void restore(GameState snapshot) {
+        if (frozen) {
+            throw new IllegalStateException("Snapshots can't be modified");
+        }
+        var rooms_before = loaded_rooms;
+        var regions_before = loaded_regions;
+        var player_before = player;
+        var item_names_before = indexed_item_names;
+        shareWith(snapshot);
+        owner = new Object();
+        name_index = null;
+        if (regions == null && loaded_rooms.size() != rooms_before.size()) {
+            changed(GameChange.Rooms);
+        }
+        loaded_rooms.forEachNotSharedWith(rooms_before, (id, room) -> {
+            var previous = rooms_before.get(id);
+            if (previous == null && regions != null && !regionLoaded(regions_before, id)) {
+                // Only loaded again
+                if (layout != null) {
+                    layout.roomReplaced(id, room);
+                }
+                return;
+            }
+            if (previous == null || previous.paths != room.paths) {
+                changed(GameChange.Rooms);
+                return;
+            }
+            if (previous.items != room.items) {
+                changed(GameChange.RoomItems);
+            }
+            if (layout != null) {
+                layout.roomReplaced(id, room);
+            }
+        });
+        if (regions != null) {
+            rooms_before.forEachNotSharedWith(loaded_rooms, (id, _) -> {
+                if (loaded_rooms.containsKey(id)) {
+                    return;
+                }
+                if (!regionLoaded(loaded_regions, id)) {
+                    // Only unloaded
+                    if (layout != null) {
+                        layout.roomUnloaded(id);
+                    }
+                    return;
+                }
+                changed(GameChange.Rooms);
+            });
+            syncRecentRegions();
+        }
+        player = snapshot.player.copy();
+        if (pending_changes.contains(GameChange.Rooms) && layout != null) {
+            if (regions == null) {
+                layout = new MapLayout(rooms_view);
+            } else {
+                // Laid out again, the rooms that aren't loaded wouldn't be on the map
+                layout.update();
+            }
+        }
+        if (!player.getCurrentRoomId().equals(player_before.getCurrentRoomId())) {
+            changed(GameChange.CurrentRoom);
+        }
+        if (player.items != player_before.items) {
+            changed(GameChange.Inventory);
+        }
+        if (indexed_item_names != item_names_before) {
+            changed(GameChange.Items);
+        }
+    }
+
+    // Rough shallow sizes of the objects a snapshot may hold on its own, see `bytesNotSharedWith`
+    private static final long GAME_BYTES = 160;
+    private static final long ROOM_BYTES = 40;
+    private static final long EXITS_BYTES = 80;
+    private static final long ITEM_BYTES = 40;
+    private static final long PLAYER_BYTES = 24;
+
+    /// Estimates the heap this snapshot retains beyond what it shares with a newer version of the game, which is what
+    /// keeping the snapshot around costs once the newer version exists.
+    long bytesNotSharedWith(GameState newer) {
+        var bytes = new long[]{GAME_BYTES + PLAYER_BYTES + player.items.bytesNotSharedWith(newer.player.items)};
+        bytes[0] += loaded_rooms.forEachNotSharedWith(newer.loaded_rooms, (id, room) -> {
+            var newer_room = newer.loaded_rooms.get(id);
+            bytes[0] += ROOM_BYTES;
+            if (newer_room == null) {
+                bytes[0] += EXITS_BYTES + room.items.bytesNotSharedWith(PersistentSet.empty());
+                return;
+            }
+            bytes[0] += room.items.bytesNotSharedWith(newer_room.items);
+            if (room.paths != newer_room.paths) {
+                bytes[0] += EXITS_BYTES;
+            }
+        });
+        bytes[0] += loaded_items.forEachNotSharedWith(newer.loaded_items, (_, _) -> bytes[0] += ITEM_BYTES);
+        BiConsumer<Object, Object> ignore = (_, _) -> {
+        };
+        bytes[0] += items_by_name.forEachNotSharedWith(newer.items_by_name, ignore);
+        bytes[0] += indexed_item_names.forEachNotSharedWith(newer.indexed_item_names, ignore);
+        bytes[0] += indexed_room_names.forEachNotSharedWith(newer.indexed_room_names, ignore);
+        return bytes[0];
     }
 
-    public void notifyUpdateHooks() {
+    /// Returns true if nothing in the game changed since the snapshot was taken, such as when the command run in between
+    /// failed or had nothing to act on. Only what the snapshot shares with the game is compared, not the rooms and items.
+    boolean unchangedSince(GameState snapshot) {
+        return loaded_rooms == snapshot.loaded_rooms
+                && loaded_items == snapshot.loaded_items
+                && player.items == snapshot.player.items
+                && player.getCurrentRoomId().equals(snapshot.player.getCurrentRoomId())
+                && items_by_name == snapshot.items_by_name
+                && indexed_item_names == snapshot.indexed_item_names
+                && indexed_room_names == snapshot.indexed_room_names
+                && loaded_regions == snapshot.loaded_regions
+                && written_regions == snapshot.written_regions
+                && moved_items == snapshot.moved_items
+                && renamed_items == snapshot.renamed_items;
+    }
+
+    // Shares all rooms, items and indexes with the other game. The name index is rebuilt once needed.
+    private void shareWith(GameState other) {
+        loaded_rooms = other.loaded_rooms;
+        loaded_items = other.loaded_items;
+        player = other.player;
+        items_by_name = other.items_by_name;
+        indexed_item_names = other.indexed_item_names;
+        indexed_room_names = other.indexed_room_names;
+        journal_id = other.journal_id;
+        journal_sequence = other.journal_sequence;
+        regions = other.regions;
+        loaded_regions = other.loaded_regions;
+        written_regions = other.written_regions;
+        moved_items = other.moved_items;
+        renamed_items = other.renamed_items;
+    }
+
+    @JsonProperty(value = "typed_rooms", access = JsonProperty.Access.WRITE_ONLY)
+    @JsonDeserialize(using = ObjectTypes.LegacyRooms.class)
+    private void setLegacyRooms(Map<String, Room> rooms) {
+        legacy_rooms = rooms;
+    }
+
+    @JsonProperty(value = "typed_items", access = JsonProperty.Access.WRITE_ONLY)
+    @JsonDeserialize(using = ObjectTypes.LegacyItems.class)
+    private void setLegacyItems(Map<String, Item> items) {
+        legacy_items = items;
+    }
+
+    @JsonProperty("world")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String world() {
+        return regions == null ? null : regions.directory.toString();
+    }
+
+    @JsonProperty("world")
+    private void setWorld(String directory) {
+        try {
+            regions = WorldRegions.open(Path.of(directory));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open the world " + directory, e);
+        }
+    }
+
+    // Saves hold the regions the game wrote back, as the files they were written to only last as long as the process
+    @JsonProperty("written_regions")
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private Map<Integer, WorldRegions.Region> writtenRegions() {
+        var written = new TreeMap<Integer, WorldRegions.Region>();
+        written_regions.forEach((region, version) -> {
+            try {
+                written.put(region, regions.read(region, version));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read written back region " + region, e);
+            }
+        });
+        return written;
+    }
+
+    @JsonProperty("written_regions")
+    private void setWrittenRegions(Map<Integer, WorldRegions.Region> written) {
+        if (regions == null) {
+            throw new IllegalStateException("Written back regions of a game without a world");
+        }
+        for (var region : written.entrySet()) {
+            try {
+                written_regions = written_regions.with(region.getKey(), regions.write(region.getKey(), region.getValue()));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write back region " + region.getKey(), e);
+            }
+        }
+    }
+
+    /// Returns a room, or null if there is no such room. The room's region is loaded if the world is streamed and the
+    /// region isn't loaded, unless this is a snapshot.
+    Room room(String id) {
+        var room = loaded_rooms.get(id);
+        if (room != null || regions == null || frozen || id == null) {
+            return room;
+        }
+        var region = regions.index.roomRegion(id);
+        if (region.isEmpty() || !loadRegion(region.getAsInt())) {
+            return null;
+        }
+        unloadColdRegions(Set.of(region.getAsInt()));
+        return loaded_rooms.get(id);
+    }
+
+    /// Returns an item, or null if there is no such item. Like `room`, the item's region is loaded if it isn't.
+    Item item(String id) {
+        var item = loaded_items.get(id);
+        if (item != null || regions == null || frozen || id == null) {
+            return item;
+        }
+        var region = itemRegion(id);
+        if (region.isEmpty() || !loadRegion(region.getAsInt())) {
+            return null;
+        }
+        unloadColdRegions(Set.of(region.getAsInt()));
+        return loaded_items.get(id);
+    }
+
+    private OptionalInt itemRegion(String id) {
+        var moved = moved_items.get(id);
+        return moved != null ? OptionalInt.of(moved) : regions.index.itemRegion(id);
+    }
+
+    private boolean regionLoaded(PersistentSet<Integer> loaded, String room_id) {
+        var region = regions.index.roomRegion(room_id);
+        return region.isEmpty() || loaded.contains(region.getAsInt());
+    }
+
+    /// Loads every region with a room within `WorldRegions.STREAM_DISTANCE` exits of the room, then unloads the regions
+    /// the player was least recently near until no more than `WorldRegions.RESIDENT_REGIONS` are loaded.
+    void streamAround(String room_id) {
+        if (regions == null || frozen) {
+            return;
+        }
+        // Nearest first
+        var near = new LinkedHashSet<Integer>();
+        var seen = new HashSet<String>();
+        seen.add(room_id);
+        var reached = List.of(room_id);
+        for (int distance = 0; !reached.isEmpty(); distance++) {
+            var next = new ArrayList<String>();
+            for (var id : reached) {
+                var region = regions.index.roomRegion(id);
+                if (region.isPresent()) {
+                    near.add(region.getAsInt());
+                    loadRegion(region.getAsInt());
+                }
+                var room = loaded_rooms.get(id);
+                if (room == null || distance == WorldRegions.STREAM_DISTANCE) {
+                    continue;
+                }
+                for (var exit : room.paths.values()) {
+                    if (seen.add(exit)) {
+                        next.add(exit);
+                    }
+                }
+            }
+            reached = next;
+        }
+        for (var region : near.reversed()) {
+            recent_regions.get(region);
+        }
+        unloadColdRegions(near);
+    }
+
+    // Loads a region that isn't loaded. Returns false if it was loaded already or couldn't be read.
+    private boolean loadRegion(int region) {
+        if (loaded_regions.contains(region)) {
+            return false;
+        }
+        WorldRegions.Region contents;
+        try {
+            contents = regions.read(region, written_regions.get(region));
+        } catch (IOException | JacksonException e) {
+            System.err.println("Failed to load region " + region + " of the world: " + e);
+            return false;
+        }
+        // The owner of the region as loaded, the game copies the rooms and items before modifying them
+        var loaded_with = new Object();
+        var placements = new ArrayList<PendingPlacement>();
+        for (var entry : contents.rooms.entrySet()) {
+            var id = entry.getKey();
+            if (loaded_rooms.containsKey(id)) {
+                continue;
+            }
+            var room = entry.getValue();
+            room.setId(id);
+            room.owner = loaded_with;
+            loaded_rooms = loaded_rooms.with(id, room);
+            indexed_room_names = indexName(indexed_room_names, id, room.name);
+            regions.index.placement(id).ifPresent(placements::add);
+        }
+        for (var entry : contents.items.entrySet()) {
+            var id = entry.getKey();
+            // Items moved out of the region since were unloaded with another region, or are still loaded
+            if (loaded_items.containsKey(id) || itemRegion(id).orElse(-1) != region) {
+                continue;
+            }
+            var item = entry.getValue();
+            item.setId(id);
+            item.owner = loaded_with;
+            loaded_items = loaded_items.with(id, item);
+            indexItemNames(id, item);
+        }
+        loaded_regions = loaded_regions.with(region);
+        recent_regions.put(region, loaded_with);
+        if (layout != null) {
+            layout.roomsLoaded(placements);
+        }
+        return true;
+    }
+
+    // Unloads the regions the player was least recently near, other than the given ones and the player's own, until no
+    // more than `WorldRegions.RESIDENT_REGIONS` are loaded
+    private void unloadColdRegions(Set<Integer> keep) {
+        if (loaded_regions.size() <= WorldRegions.RESIDENT_REGIONS) {
+            return;
+        }
+        var player_region = regions.index.roomRegion(player.getCurrentRoomId()).orElse(-1);
+        for (var region : new ArrayList<>(recent_regions.keySet())) {
+            if (loaded_regions.size() <= WorldRegions.RESIDENT_REGIONS) {
+                return;
+            }
+            if (region != player_region && !keep.contains(region)) {
+                unloadRegion(region);
+            }
+        }
+    }
+
+    // Unloads a region along with the items in its rooms, writing it back first if the game modified it. A region that
+    // can't be written back stays loaded.
+    private void unloadRegion(int region) {
+        var loaded_with = recent_regions.get(region);
+        var contents = new WorldRegions.Region();
+        var room_ids = regions.index.roomsOf(region);
+        var modified = false;
+        for (var id : room_ids) {
+            var room = loaded_rooms.get(id);
+            if (room == null) {
+                // Removed from the world
+                modified = true;
+                continue;
+            }
+            contents.rooms.put(id, room);
+            modified |= room.owner != loaded_with;
+            for (var item_id : room.items) {
+                var item = loaded_items.get(item_id);
+                if (item != null) {
+                    contents.items.put(item_id, item);
+                    modified |= item.owner != loaded_with;
+                }
+            }
+        }
+        if (modified) {
+            try {
+                written_regions = written_regions.with(region, regions.write(region, contents));
+            } catch (IOException | JacksonException e) {
+                System.err.println("Failed to write back region " + region + " of the world, keeping it loaded: " + e);
+                return;
+            }
+        }
+        for (var entry : contents.items.entrySet()) {
+            var id = entry.getKey();
+            var compiled_region = regions.index.itemRegion(id);
+            if (compiled_region.isPresent() && compiled_region.getAsInt() == region) {
+                moved_items = moved_items.without(id);
+            } else {
+                moved_items = moved_items.with(id, region);
+            }
+            var name = entry.getValue().getName();
+            if (name != null && !regions.index.itemNamed(name.toLowerCase()).map(id::equals).orElse(false)) {
+                renamed_items = renamed_items.with(name.toLowerCase(), id);
+            }
+            unindexItemNames(id, entry.getValue());
+            loaded_items = loaded_items.without(id);
+        }
+        for (var id : contents.rooms.keySet()) {
+            loaded_rooms = loaded_rooms.without(id);
+            indexed_room_names = indexName(indexed_room_names, id, null);
+            if (layout != null) {
+                layout.roomUnloaded(id);
+            }
+        }
+        loaded_regions = loaded_regions.without(region);
+        recent_regions.remove(region);
+    }
+
+    // Brings the order regions were used in up to date with the loaded regions, such as after going back to a
+    // snapshot. Regions it didn't know are treated as modified, as it isn't known what they were loaded from.
+    private void syncRecentRegions() {
+        recent_regions.keySet().removeIf(region -> !loaded_regions.contains(region));
+        loaded_regions.forEach(region -> {
+            if (!recent_regions.containsKey(region)) {
+                recent_regions.put(region, new Object());
+            }
+        });
+    }
+
+    /// Returns the room to modify it in place, or null if there is no such room. A room that is shared with a snapshot
+    /// or copy of the game is copied first.
+    Room roomForUpdate(String id) {
+        if (frozen) {
+            throw new IllegalStateException("Snapshots can't be modified");
+        }
+        var room = room(id);
+        if (room == null || room.owner == owner) {
+            return room;
+        }
+        var copy = room.copy();
+        copy.owner = owner;
+        loaded_rooms = loaded_rooms.with(id, copy);
+        if (layout != null) {
+            layout.roomReplaced(id, copy);
+        }
+        return copy;
+    }
+
+    /// Returns the item to modify it in place, or null if there is no such item. Like `roomForUpdate`, an item that is
+    /// shared with a snapshot or copy of the game is copied first.
+    Item itemForUpdate(String id) {
+        if (frozen) {
+            throw new IllegalStateException("Snapshots can't be modified");
+        }
+        var item = item(id);
+        if (item == null || item.owner == owner) {
+            return item;
+        }
+        var copy = item.copy();
+        copy.owner = owner;
+        loaded_items = loaded_items.with(id, copy);
+        return copy;
+    }
+
+    Room currentRoomForUpdate() {
+        return roomForUpdate(player.getCurrentRoomId());
+    }
+
+    private record UpdateHook(Set<GameChange> changes, BiConsumer<GameState, Set<GameChange>> hook) {
+    }
+
+    /// Registers a function that shall be called with everything that changed, once any of the given changes were made.
+    /// Changes are collected while a command runs, so each hook runs at most once per command, see `dispatchChanges`.
+    public void registerUpdateHook(Set<GameChange> changes, BiConsumer<GameState, Set<GameChange>> hook) {
+        updateHooks.add(new UpdateHook(EnumSet.copyOf(changes), hook));
+    }
+
+    /// Takes over the update hooks of a game this game replaces, such as a loaded save, which changed everything.
+    void takeUpdateHooks(GameState replaced) {
+        updateHooks.addAll(replaced.updateHooks);
+        pending_changes.addAll(EnumSet.allOf(GameChange.class));
+    }
+
+    /// Records a change, which is handed to the update hooks on the next `dispatchChanges`.
+    void changed(GameChange change) {
+        pending_changes.add(change);
+    }
+
+    /// Runs every update hook interested in the changes made since the last dispatch, and forgets those changes.
+    public void dispatchChanges() {
+        if (pending_changes.isEmpty()) {
+            return;
+        }
+        var changes = Collections.unmodifiableSet(EnumSet.copyOf(pending_changes));
+        pending_changes.clear();
         for (var hook : updateHooks) {
-            hook.accept(this);
+            if (!Collections.disjoint(hook.changes(), changes)) {
+                hook.hook().accept(this, changes);
+            }
         }
     }
 
     public Room getCurrentRoom() {
         var room_name = player.getCurrentRoomId();
-        return loaded_rooms.get(room_name);
+        return room(room_name);
     }
 
     ///  This method should be called after updating the room structure.
     public void roomUpdateHook() {
-        loaded_rooms.putAll(generic_rooms);
-        loaded_rooms.putAll(typed_rooms.toRoomMap());
-        for (var room : loaded_rooms.entrySet()) {
-            String name = room.getKey();
-            room.getValue().setId(name);
+        roomUpdateHook(List.of());
+    }
+
+    /// Like `roomUpdateHook`, but a game without a layout yet starts from the given room placements instead of laying
+    /// out every room.
+    void roomUpdateHook(List<PendingPlacement> placements) {
+        for (var legacy : legacy_rooms.entrySet()) {
+            loaded_rooms = loaded_rooms.with(legacy.getKey(), legacy.getValue());
+        }
+        legacy_rooms = Map.of();
+        loaded_rooms.forEach((name, room) -> {
+            // Ids only change when loading, rooms shared with snapshots already have theirs
+            if (!name.equals(room.getId())) {
+                room.setId(name);
+            }
+        });
+        if (layout == null) {
+            // The rooms of a streamed world are placed where the map of the whole world has them
+            layout = regions == null ? new MapLayout(rooms_view, placements)
+                    : new MapLayout(rooms_view, regions.index.placements(loaded_rooms.keySet()), true);
+        } else {
+            layout.update();
+        }
+        indexed_room_names = indexNames(indexed_room_names, loaded_rooms, room -> room.name);
+        if (regions != null) {
+            syncRecentRegions();
+        }
+        changed(GameChange.Rooms);
+    }
+
+    /// Adds a room to the world, placing it on the map without recomputing the rest of the layout.
+    public void addRoom(String id, Room room) {
+        room.setId(id);
+        room.owner = owner;
+        loaded_rooms = loaded_rooms.with(id, room);
+        layout.roomAdded(id);
+        indexed_room_names = indexName(indexed_room_names, id, room.name);
+        changed(GameChange.Rooms);
+    }
+
+    /// Removes a room from the world. Exits leading to it are left dangling, and lead nowhere.
+    public void removeRoom(String id) {
+        if (room(id) == null) {
+            return;
+        }
+        loaded_rooms = loaded_rooms.without(id);
+        layout.roomRemoved(id);
+        indexed_room_names = indexName(indexed_room_names, id, null);
+        changed(GameChange.Rooms);
+    }
+
+    /// Sets or, if `target` is null, removes an exit of a room, placing any rooms it makes reachable on the map.
+    public void setExit(String room_id, Direction direction, String target) {
+        var room = roomForUpdate(room_id);
+        if (room == null) {
+            return;
         }
-        layout = new MapLayout(loaded_rooms);
-        notifyUpdateHooks();
+        if (target == null) {
+            room.removeExit(direction);
+        } else {
+            room.setExit(direction, target);
+        }
+        layout.exitsChanged(room_id);
+        changed(GameChange.Rooms);
     }
 
+    /// Finds an item by id, or by its name or one of its aliases, ignoring case. In a streamed world, an item that isn't
+    /// loaded is found through the world's index, and its region is loaded.
     public Optional<Item> lookupItem(String name) {
-        return Optional.ofNullable(loaded_items.get(name)).or(() -> {
-            var name_lowercase = name.toLowerCase();
-            for (var item : loaded_items.values()) {
-                if (item.getName().toLowerCase().equals(name_lowercase)) {
-                    return Optional.of(item);
-                }
+        var item = item(name);
+        if (item != null) {
+            return Optional.of(item);
+        }
+        var lowercase_name = name.toLowerCase();
+        var id = items_by_name.get(lowercase_name);
+        if (id != null || regions == null) {
+            return Optional.ofNullable(id).map(this::item);
+        }
+        id = renamed_items.get(lowercase_name);
+        if (id == null) {
+            id = regions.index.itemNamed(lowercase_name).orElse(null);
+        }
+        // Unless the item was renamed since
+        return Optional.ofNullable(id).map(this::item).filter(found -> isNamed(found, lowercase_name));
+    }
+
+    private static boolean isNamed(Item item, String lowercase_name) {
+        return (item.getName() != null && item.getName().toLowerCase().equals(lowercase_name))
+                || item.getAliases().stream().anyMatch(alias -> alias.toLowerCase().equals(lowercase_name));
+    }
+
+    // Indexes the name and aliases of an item that was loaded, unless they refer to another item already
+    private void indexItemNames(String id, Item item) {
+        if (item.getName() != null && !items_by_name.containsKey(item.getName().toLowerCase())) {
+            items_by_name = items_by_name.with(item.getName().toLowerCase(), id);
+        }
+        for (var alias : item.getAliases()) {
+            if (!items_by_name.containsKey(alias.toLowerCase())) {
+                items_by_name = items_by_name.with(alias.toLowerCase(), id);
             }
-            return Optional.empty();
-        });
+        }
+        indexed_item_names = indexName(indexed_item_names, id, item.getName());
+    }
+
+    private void unindexItemNames(String id, Item item) {
+        if (item.getName() != null && id.equals(items_by_name.get(item.getName().toLowerCase()))) {
+            items_by_name = items_by_name.without(item.getName().toLowerCase());
+        }
+        for (var alias : item.getAliases()) {
+            if (id.equals(items_by_name.get(alias.toLowerCase()))) {
+                items_by_name = items_by_name.without(alias.toLowerCase());
+            }
+        }
+        indexed_item_names = indexName(indexed_item_names, id, null);
     }
 
     ///  This method should be called after updating the item structure.
     public void itemUpdateHook() {
-        loaded_items.putAll(typed_items.toItemMap());
-        loaded_items.putAll(inert_items);
-        for (var item : loaded_items.entrySet()) {
-            String name = item.getKey();
-            item.getValue().setId(name);
+        for (var legacy : legacy_items.entrySet()) {
+            loaded_items = loaded_items.with(legacy.getKey(), legacy.getValue());
+        }
+        legacy_items = Map.of();
+        loaded_items.forEach((name, item) -> {
+            if (!name.equals(item.getId())) {
+                item.setId(name);
+            }
+        });
+        var by_name = new HashMap<String, String>();
+        // Names take precedence over aliases, and the first item with a given name wins
+        loaded_items.forEach((id, item) -> {
+            if (item.getName() != null) {
+                by_name.putIfAbsent(item.getName().toLowerCase(), id);
+            }
+        });
+        loaded_items.forEach((id, item) -> {
+            for (var alias : item.getAliases()) {
+                by_name.putIfAbsent(alias.toLowerCase(), id);
+            }
+        });
+        items_by_name = PersistentMap.copyOf(by_name);
+        indexed_item_names = indexNames(indexed_item_names, loaded_items, Item::getName);
+        changed(GameChange.Items);
+    }
+
+    /// This method should be called after an item's name changes, such as the pizza getting burnt.
+    public void itemRenamed(Item item) {
+        var previous = indexed_item_names.get(item.getId());
+        if (previous != null && item.getId().equals(items_by_name.get(previous))) {
+            items_by_name = items_by_name.without(previous);
+        }
+        if (item.getName() != null) {
+            items_by_name = items_by_name.with(item.getName().toLowerCase(), item.getId());
         }
-        notifyUpdateHooks();
+        indexed_item_names = indexName(indexed_item_names, item.getId(), item.getName());
+        changed(GameChange.Items);
+    }
+
+    /// Returns the lowercase names of all items and rooms, for suggesting corrections to misspelled commands.
+    BKTree nameIndex() {
+        if (name_index == null) {
+            name_index = new BKTree();
+            indexed_item_names.values().forEach(name_index::add);
+            indexed_room_names.values().forEach(name_index::add);
+        }
+        return name_index;
+    }
+
+    // Brings the name index up to date with the given items or rooms, only touching the names that changed. Returns
+    // the names they are now indexed under.
+    private <T> PersistentMap<String, String> indexNames(PersistentMap<String, String> indexed, Map<String, T> current, Function<T, String> name_of) {
+        var updated = indexed;
+        for (var entry : indexed.entrySet()) {
+            if (!current.containsKey(entry.getKey())) {
+                if (name_index != null) {
+                    name_index.remove(entry.getValue());
+                }
+                updated = updated.without(entry.getKey());
+            }
+        }
+        for (var entry : current.entrySet()) {
+            updated = indexName(updated, entry.getKey(), name_of.apply(entry.getValue()));
+        }
+        return updated;
+    }
+
+    // Re-indexes a single item or room under its current name, or removes it from the index if the name is null
+    private PersistentMap<String, String> indexName(PersistentMap<String, String> indexed, String id, String name) {
+        var lowercase_name = name == null ? null : name.toLowerCase();
+        var previous = indexed.get(id);
+        if (Objects.equals(previous, lowercase_name)) {
+            return indexed;
+        }
+        if (name_index != null) {
+            if (previous != null) {
+                name_index.remove(previous);
+            }
+            if (lowercase_name != null) {
+                name_index.add(lowercase_name);
+            }
+        }
+        return lowercase_name == null ? indexed.without(id) : indexed.with(id, lowercase_name);
     }
 
     public List<String> autocomplete(String text) {
@@ -107,73 +871,40 @@ public class GameState {
             controller.presentUrgentMessage("What's a \"" + item_name + "\"?");
             return;
         }
-        var item = maybe_item.get();
-        if (!player.hasItem(item.getId())) {
-            if (getCurrentRoom().items.contains(item_name)) {
-                item.useInRoom(this);
+        var id = maybe_item.get().getId();
+        if (!player.hasItem(id)) {
+            if (getCurrentRoom().items.contains(id)) {
+                // Using an item may change it, it is only copied once it is used
+                itemForUpdate(id).useInRoom(this);
                 return;
             }
             controller.presentUrgentMessage("You don't have this!");
             return;
         }
-        item.useInInventory(this);
+        itemForUpdate(id).useInInventory(this);
     }
 
 
+    /// Shows the whole map.
     void mapMessage() {
-        StringBuilder out = new StringBuilder();
-        out.append("Map:\n");
-        int room_name_length = layout.layout.streamVal().filter(Objects::nonNull).mapToInt(room -> room.name.length()).max().orElse(0);
-        char[] delimiters = {'[', ']'};
-        var no_room = " ".repeat(room_name_length + delimiters.length);
-        var horizontal_connector = "<=>";
-        var no_horizontal_connector = " ".repeat(horizontal_connector.length());
-        var vertical_connector = StringUtils.centerString("|", room_name_length + delimiters.length);
-        var current_room = this.player.getCurrentRoomId();
-
-        for (int row_idx = 0; row_idx < layout.layout.getHeight(); row_idx++) {
-            var row = layout.layout.row(row_idx);
-            // Print upper/north connectors
-            for (int col_idx = 0; row_idx > 0 && col_idx < layout.layout.getWidth(); col_idx++) {
-                var room = row.get(col_idx);
-
-                if (col_idx > 0) {
-                    out.append(no_horizontal_connector);
-                }
+        controller.presentMessage(mapRenderer().render(player.getCurrentRoomId()));
+    }
 
-                if (room != null && room.getExitName(Direction.North) != null) {
-                    out.append(vertical_connector);
-                } else {
-                    out.append(no_room);
-                }
-            }
-            out.append('\n');
-            // Print room names and left/west connectors
-            for (int col_idx = 0; col_idx < layout.layout.getWidth(); col_idx++) {
-                var room = row.get(col_idx);
-                if (room == null) {
-                    if (col_idx > 0) {
-                        out.append(no_horizontal_connector);
-                    }
-                    out.append(no_room);
-                    continue;
-                }
-                if (col_idx > 0) {
-                    var connector = room.getExitName(Direction.West) != null ? horizontal_connector : no_horizontal_connector;
-                    out.append(connector);
-                }
-                var display_delimiters = room.getId().equals(current_room) ? delimiters : new char[]{' ', ' '};
-                var display_name = StringUtils.centerString(display_delimiters[0] + room.name + display_delimiters[1], room_name_length);
-                out.append(display_name);
-            }
-            out.append('\n');
+    /// Shows the part of the map within `radius` cells of the player.
+    void mapMessage(int radius) {
+        controller.presentMessage(mapRenderer().renderWindow(player.getCurrentRoomId(), radius));
+    }
+
+    private MapRenderer mapRenderer() {
+        if (map_renderer == null || map_renderer.layout != layout) {
+            map_renderer = new MapRenderer(layout);
         }
-        controller.presentMessage(out.toString());
+        return map_renderer;
     }
 
     void lookMessage() {
         controller.presentMessage("Your items: " + player.getItemString(this));
-        controller.presentMessage(loaded_rooms.get(player.getCurrentRoomId()).getLongDescription(this));
+        controller.presentMessage(getCurrentRoom().getLongDescription(this));
     }
 
     void goTo(String place) {
@@ -184,7 +915,8 @@ public class GameState {
         }
         Direction direction = parsed_direction.get();
 
-        Room nextRoom = loaded_rooms.get(this.getCurrentRoom().getExitName(direction));
+        // Entering a room may change it
+        Room nextRoom = roomForUpdate(this.getCurrentRoom().getExitName(direction));
         String old_room = this.getCurrentRoom().getId();
 
         if (nextRoom == null) {
@@ -192,7 +924,10 @@ public class GameState {
             return;
         }
         nextRoom.onEnter(this);
-        notifyUpdateHooks();
+        if (!old_room.equals(player.getCurrentRoomId())) {
+            changed(GameChange.CurrentRoom);
+            streamAround(player.getCurrentRoomId());
+        }
         if (this.controller.WasExitRequested()) {
             return;
         }
@@ -0,0 +1,24 @@
+package org.example;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/// A fixed-size two-dimensional grid of cells indexed by row and column, where empty cells hold null.
+public interface Grid<T> {
+    int getWidth();
+
+    int getHeight();
+
+    T get(int row, int column);
+
+    void set(int row, int column, T value);
+
+    /// Returns a view of the given row.
+    List<T> row(int row);
+
+    /// Streams every cell, including empty ones, in row-major order.
+    Stream<T> streamVal();
+
+    /// Streams the non-empty cells, in no particular order. Unlike `streamVal`, the cost does not depend on the grid's area.
+    Stream<T> streamPresent();
+}
@@ -1,15 +1,44 @@
 package org.example;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import tools.jackson.databind.annotation.JsonTypeIdResolver;
 
-public class Item {
+import java.util.List;
+import java.util.function.Supplier;
+
+/// An item of the world. Like rooms, items are shared between a game and its snapshots until modified, modify an item
+/// obtained from `GameState.itemForUpdate`.
+///
+/// Items with custom behavior are subclasses, registered with a type id by an `ObjectTypeProvider`.
+@JsonTypeInfo(use = JsonTypeInfo.Id.CUSTOM, include = JsonTypeInfo.As.EXISTING_PROPERTY, property = "type", defaultImpl = Item.class)
+@JsonTypeIdResolver(ObjectTypes.Resolver.class)
+public class Item implements Cloneable {
     @JsonProperty("description")
     private String description;
     @JsonProperty("name")
     private String name;
+    /// Other names the item can be referred to by
+    @JsonProperty("aliases")
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private List<String> aliases = List.of();
     @JsonIgnore
     private String id;
+    // Decodes the description on first use, for items loaded from a world image
+    @JsonIgnore
+    private Supplier<String> description_source;
+    // The game that may modify this item in place, see `GameState.itemForUpdate`
+    @JsonIgnore
+    Object owner;
+
+    /// The id of the item's type, or null for a plain item
+    @JsonProperty("type")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    String type() {
+        return ObjectTypes.INSTANCE.idOf(this);
+    }
 
     public void setId(String id) {
         this.id = id;
@@ -28,12 +57,13 @@ public class Item {
     }
 
     public void pickUp(GameState context) {
-        if (!context.getCurrentRoom().takeItem(this.id)) {
+        if (!context.currentRoomForUpdate().takeItem(this.id)) {
             context.controller.presentMessage("I can't find this item!");
             return;
         }
         context.player.addItem(this.id);
-        context.notifyUpdateHooks();
+        context.changed(GameChange.Inventory);
+        context.changed(GameChange.RoomItems);
     }
 
     public void drop(GameState context) {
@@ -42,21 +72,49 @@ public class Item {
             return;
         }
         context.player.removeItem(this.id);
-        context.getCurrentRoom().addItem(this.id);
-        context.notifyUpdateHooks();
-
+        context.currentRoomForUpdate().addItem(this.id);
+        context.changed(GameChange.Inventory);
+        context.changed(GameChange.RoomItems);
     }
 
     public String getDescription() {
-        return description;
+        // Not cached in the item, as shared items are read from several threads. The image only decodes it once.
+        return description_source != null ? description_source.get() : description;
+    }
+
+    /// Sets a description that is only decoded once it is first needed.
+    void describeLazily(Supplier<String> source) {
+        description = null;
+        description_source = source;
+    }
+
+    /// Copies the item, including the state of items with custom behavior. Text is shared with the copy.
+    Item copy() {
+        try {
+            return (Item) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    void setName(String name) {
+        this.name = name;
+    }
+
+    void setAliases(List<String> aliases) {
+        this.aliases = aliases;
     }
 
     public String getName() {
         return name;
     }
 
+    public List<String> getAliases() {
+        return aliases;
+    }
+
     @Override
     public String toString() {
-        return "Item{" + "description='" + description + '\'' + ", name='" + name + '\'' + '}';
+        return "Item{" + "description='" + getDescription() + '\'' + ", name='" + name + '\'' + '}';
     }
 }
@@ -1,65 +1,351 @@
 package org.example;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
+/// Places rooms on a grid according to their exits, for the `map` command.
+///
+/// The layout is computed once on construction and then kept up to date incrementally: added rooms and changed exits
+/// only place the rooms that became reachable, and rooms that were already placed never move. Construct a new layout
+/// to lay everything out from scratch.
+///
+/// Layouts of streamed worlds(see `WorldRegions`) place every room where the world's map has it once its region is
+/// loaded, and keep unloaded rooms on the map as stubs, so the map doesn't depend on which regions are loaded.
 public class MapLayout {
-    public final Matrix<Room> layout;
-
-    public MapLayout(HashMap<String, Room> rooms) {
-        var locations = getLocations(rooms);
-        int[] dimensions = {0, 0};
-        locations.forEach((name, location) -> {
-            dimensions[0] = Math.max(dimensions[0], location.row + 1);
-            dimensions[1] = Math.max(dimensions[1], location.column + 1);
-        });
-        this.layout = new Matrix<>(dimensions[1], dimensions[0]);
-        locations.forEach((name, location) -> {
-            this.layout.set(location.row, location.column, location.room);
-        });
-    }
-
-    private HashMap<String, RoomWithLocation> getLocations(HashMap<String, Room> rooms) {
-        if (rooms.isEmpty()) {
-            return new HashMap<>();
-        }
-        HashMap<String, RoomWithLocation> locations = new HashMap<>();
-        rooms.forEach((name, room) -> locations.put(name, new RoomWithLocation(room)));
-        var entry_room = locations.entrySet().iterator().next().getKey();
-        relativeLocationRoomVisitor(locations, 0, 0, entry_room);
-        // pair of minimum value of rows and columns
-        final int[] coordinate_bounds = {0, 0, 0, 0};
-        locations.forEach((name, location) -> {
-            coordinate_bounds[0] = Math.min(coordinate_bounds[0], location.row);
-            coordinate_bounds[1] = Math.min(coordinate_bounds[1], location.column);
-            assert location.visited;
-        });
-        int row_offset = -coordinate_bounds[0];
-        int col_offset = -coordinate_bounds[1];
-        locations.forEach((name, location) -> {
-            location.row += row_offset;
-            location.column += col_offset;
-        });
-        return locations;
+    // Layouts with fewer cells than this always use a dense matrix, as the sparse grid has a higher constant cost
+    static final int SPARSE_MIN_AREA = 64 * 64;
+    // Larger layouts switch to a sparse grid when fewer than this fraction of cells contain a room
+    static final double SPARSE_MAX_OCCUPANCY = 0.25;
+    // Number of empty columns between groups of rooms that aren't connected to each other
+    static final int COMPONENT_GAP = 1;
+
+    public Grid<Room> layout;
+    private final Map<String, Room> rooms;
+    // Layout coordinates of every placed room. These may be negative, the grid is offset by the minimum row/column.
+    private final HashMap<String, RoomWithLocation> locations = new HashMap<>();
+    private int min_row = 0, min_column = 0, max_row = -1, max_column = -1;
+    // Layout coordinates of the grid's top left cell
+    private int grid_row = 0, grid_column = 0;
+    private long version = 0;
+    // Rooms missing from the rooms map were unloaded rather than removed, see `roomUnloaded`
+    private final boolean streamed;
+
+    /// Lays out the given rooms. The map is kept by reference, `update` picks up later changes to it.
+    public MapLayout(Map<String, Room> rooms) {
+        this(rooms, List.of());
+    }
+
+    /// Lays out the given rooms, starting from placements computed earlier, such as those stored in a world image.
+    /// Rooms without a placement are placed as usual.
+    MapLayout(Map<String, Room> rooms, List<PendingPlacement> placements) {
+        this(rooms, placements, false);
+    }
+
+    /// Like `MapLayout(rooms, placements)`, for the loaded rooms of a streamed world if `streamed` is set.
+    MapLayout(Map<String, Room> rooms, List<PendingPlacement> placements, boolean streamed) {
+        this.rooms = rooms;
+        this.streamed = streamed;
+        for (var placement : placements) {
+            var room = rooms.get(placement.name());
+            if (room == null) {
+                continue;
+            }
+            var location = new RoomWithLocation(room, placement.row(), placement.column());
+            locations.put(placement.name(), location);
+            extendBounds(location);
+        }
+        for (var name : rooms.keySet()) {
+            if (!locations.containsKey(name)) {
+                placeNewRoom(name);
+            }
+        }
+        rebuildGrid();
+    }
+
+    /// Copies a layout for copies of its rooms, without laying anything out again.
+    MapLayout(MapLayout template, Map<String, Room> rooms) {
+        this.rooms = rooms;
+        streamed = template.streamed;
+        min_row = template.min_row;
+        min_column = template.min_column;
+        max_row = template.max_row;
+        max_column = template.max_column;
+        for (var placed : template.locations.entrySet()) {
+            var template_location = placed.getValue();
+            // Stubs of unloaded rooms don't change, they can be shared
+            var room = template_location.unloaded ? template_location.room : rooms.get(placed.getKey());
+            var location = new RoomWithLocation(room, template_location.row, template_location.column);
+            location.exits = template_location.exits;
+            location.unloaded = template_location.unloaded;
+            locations.put(placed.getKey(), location);
+        }
+        rebuildGrid();
+    }
+
+    /// Incremented whenever the layout changes.
+    public long getVersion() {
+        return version;
+    }
+
+    /// Returns the grid cell the given room was placed in, or nothing if the room isn't on the map. This is a single
+    /// lookup, regardless of the size of the layout. Rooms with clashing exits can share a cell, which then only shows
+    /// one of them.
+    public Optional<MatrixElement<Room>> locate(String room_id) {
+        var location = locations.get(room_id);
+        if (location == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new MatrixElement<>(location.row - grid_row, location.column - grid_column, location.room));
+    }
+
+    /// Picks dense storage for compact layouts and sparse storage for sprawling ones, such as long corridors, so memory
+    /// scales with the number of rooms rather than with the bounding box.
+    static <T> Grid<T> createGrid(int width, int height, int occupied) {
+        long area = (long) width * height;
+        if (area >= SPARSE_MIN_AREA && occupied < area * SPARSE_MAX_OCCUPANCY) {
+            return new SparseGrid<>(width, height);
+        }
+        return new Matrix<>(width, height);
     }
 
-    // DFS over the rooms to find their relative locations
-    private void relativeLocationRoomVisitor(HashMap<String, RoomWithLocation> locations, int row, int column, String name) {
+    /// Brings the layout up to date with the rooms map: removed rooms are cleared, and added rooms or rooms with changed
+    /// exits are placed as if `roomAdded`/`exitsChanged` had been called for them. In a streamed world, rooms missing
+    /// from the map were unloaded and stay on it, and rooms that were loaded again stay where they were.
+    public void update() {
+        var removed = new ArrayList<String>();
+        for (var location : locations.entrySet()) {
+            var room = rooms.get(location.getKey());
+            if (room == location.getValue().room || (room == null && location.getValue().unloaded)) {
+                continue;
+            }
+            if (!streamed) {
+                removed.add(location.getKey());
+            } else if (room == null) {
+                roomUnloaded(location.getKey());
+            } else {
+                roomReplaced(location.getKey(), room);
+            }
+        }
+        for (var name : removed) {
+            roomRemoved(name);
+        }
+        for (var room : rooms.entrySet()) {
+            var location = locations.get(room.getKey());
+            if (location == null) {
+                roomAdded(room.getKey());
+            } else if (!location.exits.equals(room.getValue().paths)) {
+                exitsChanged(room.getKey());
+            }
+        }
+    }
+
+    /// Places a room that was added to the rooms map, along with any unplaced rooms reachable from it.
+    public void roomAdded(String name) {
+        if (locations.containsKey(name) || !rooms.containsKey(name)) {
+            return;
+        }
+        applyPlacements(placeNewRoom(name));
+    }
+
+    /// Places any rooms that became reachable through the room's exits. Rooms that are already placed stay where they are.
+    public void exitsChanged(String name) {
+        var location = locations.get(name);
+        if (location == null) {
+            roomAdded(name);
+            return;
+        }
+        location.exits = location.room.paths;
+        var pending = new ArrayDeque<PendingPlacement>();
+        pushExits(pending, location);
+        var placed = walk(pending);
+        placed.forEach(this::extendBounds);
+        applyPlacements(placed);
+        // The exits are drawn on the map, so this is a change even if no room was placed
+        version++;
+    }
+
+    /// Moves a room's placement over to another object for the same room, such as a copy the game made to modify it,
+    /// or the room of a streamed world that was loaded again. The room stays where it is.
+    void roomReplaced(String name, Room room) {
         var location = locations.get(name);
-        if (location.visited) {
+        if (location == null) {
             return;
         }
-        location.visited = true;
-        location.row = row;
-        location.column = column;
-        var room = location.room;
-        room.paths.forEach((direction, target) -> {
-            switch (direction) {
-                case North -> relativeLocationRoomVisitor(locations, row - 1, column, target);
-                case South -> relativeLocationRoomVisitor(locations, row + 1, column, target);
-                case East -> relativeLocationRoomVisitor(locations, row, column + 1, target);
-                case West -> relativeLocationRoomVisitor(locations, row, column - 1, target);
+        replaceCell(location, room);
+        location.room = room;
+        location.unloaded = false;
+    }
+
+    /// Places the rooms of a streamed world's region that was just loaded where the world's map has them. Rooms that
+    /// were loaded before are back where they were.
+    void roomsLoaded(List<PendingPlacement> placements) {
+        var placed = new ArrayList<RoomWithLocation>();
+        for (var placement : placements) {
+            var room = rooms.get(placement.name());
+            if (room == null) {
+                continue;
+            }
+            if (locations.containsKey(placement.name())) {
+                roomReplaced(placement.name(), room);
+                continue;
             }
-        });
+            var location = new RoomWithLocation(room, placement.row(), placement.column());
+            locations.put(placement.name(), location);
+            extendBounds(location);
+            placed.add(location);
+        }
+        applyPlacements(placed);
+    }
+
+    /// Keeps a room of a streamed world that was unloaded on the map, as a stub with only what the map shows of it.
+    void roomUnloaded(String name) {
+        var location = locations.get(name);
+        if (location == null || location.unloaded) {
+            return;
+        }
+        var stub = location.room.stub();
+        replaceCell(location, stub);
+        location.room = stub;
+        location.unloaded = true;
+    }
+
+    // Shows another object for a placed room, unless its cell shows a room with clashing exits
+    private void replaceCell(RoomWithLocation location, Room room) {
+        var row = location.row - grid_row;
+        var column = location.column - grid_column;
+        if (layout.get(row, column) == location.room) {
+            layout.set(row, column, room);
+        }
+    }
+
+    /// Removes a room that was removed from the rooms map. Rooms that were reached through it keep their positions.
+    public void roomRemoved(String name) {
+        var location = locations.remove(name);
+        if (location == null) {
+            return;
+        }
+        // Rooms with clashing exits can share a cell, only clear it if it shows the removed room
+        var row = location.row - grid_row;
+        var column = location.column - grid_column;
+        if (layout.get(row, column) == location.room) {
+            layout.set(row, column, null);
+        }
+        version++;
+    }
+
+    // Places a room that isn't placed yet next to a placed neighbour it has an exit to, or, if it has none, lays out
+    // everything reachable from it on its own and moves that to the right of the rooms placed so far.
+    // Returns the newly placed rooms.
+    private ArrayList<RoomWithLocation> placeNewRoom(String name) {
+        var room = rooms.get(name);
+        var pending = new ArrayDeque<PendingPlacement>();
+        for (var exit : room.paths.entrySet()) {
+            var neighbour = locations.get(exit.getValue());
+            if (neighbour != null) {
+                var direction = exit.getKey();
+                pending.push(new PendingPlacement(name, neighbour.row - direction.rowOffset, neighbour.column - direction.columnOffset));
+                var placed = walk(pending);
+                placed.forEach(this::extendBounds);
+                return placed;
+            }
+        }
+
+        var first_component = locations.isEmpty();
+        pending.push(new PendingPlacement(name, 0, 0));
+        var placed = walk(pending);
+        if (first_component) {
+            placed.forEach(this::extendBounds);
+            return placed;
+        }
+        int component_min_row = Integer.MAX_VALUE, component_min_column = Integer.MAX_VALUE;
+        for (var location : placed) {
+            component_min_row = Math.min(component_min_row, location.row);
+            component_min_column = Math.min(component_min_column, location.column);
+        }
+        int row_offset = min_row - component_min_row;
+        int column_offset = max_column + 1 + COMPONENT_GAP - component_min_column;
+        for (var location : placed) {
+            location.row += row_offset;
+            location.column += column_offset;
+            extendBounds(location);
+        }
+        return placed;
+    }
+
+    // Walks exits with an explicit stack, so long chains of rooms can't overflow the call stack. Every room that isn't
+    // placed yet is placed relative to the room it was reached from. Returns the newly placed rooms, the caller is
+    // responsible for extending the bounds to include them.
+    private ArrayList<RoomWithLocation> walk(ArrayDeque<PendingPlacement> pending) {
+        var placed = new ArrayList<RoomWithLocation>();
+        while (!pending.isEmpty()) {
+            var next = pending.pop();
+            var room = rooms.get(next.name());
+            // Exits may point at rooms that don't exist
+            if (room == null || locations.containsKey(next.name())) {
+                continue;
+            }
+            var location = new RoomWithLocation(room, next.row(), next.column());
+            locations.put(next.name(), location);
+            placed.add(location);
+            pushExits(pending, location);
+        }
+        return placed;
+    }
+
+    private void pushExits(ArrayDeque<PendingPlacement> pending, RoomWithLocation location) {
+        // Pushed in reverse, so exits are explored in the same order as a recursive depth-first walk would
+        var directions = Direction.values();
+        for (int i = directions.length - 1; i >= 0; i--) {
+            var direction = directions[i];
+            var target = location.room.paths.get(direction);
+            if (target == null || locations.containsKey(target)) {
+                continue;
+            }
+            pending.push(new PendingPlacement(target, location.row + direction.rowOffset, location.column + direction.columnOffset));
+        }
+    }
+
+    private void extendBounds(RoomWithLocation location) {
+        if (max_row < min_row) {
+            min_row = max_row = location.row;
+            min_column = max_column = location.column;
+            return;
+        }
+        min_row = Math.min(min_row, location.row);
+        max_row = Math.max(max_row, location.row);
+        min_column = Math.min(min_column, location.column);
+        max_column = Math.max(max_column, location.column);
+    }
+
+    // Writes newly placed rooms into the grid, rebuilding it if they don't fit
+    private void applyPlacements(ArrayList<RoomWithLocation> placed) {
+        if (placed.isEmpty()) {
+            return;
+        }
+        version++;
+        if (min_row < grid_row || min_column < grid_column
+                || max_row >= grid_row + layout.getHeight() || max_column >= grid_column + layout.getWidth()) {
+            rebuildGrid();
+            return;
+        }
+        for (var location : placed) {
+            layout.set(location.row - grid_row, location.column - grid_column, location.room);
+        }
+    }
+
+    private void rebuildGrid() {
+        grid_row = min_row;
+        grid_column = min_column;
+        int height = Math.max(max_row - min_row + 1, 0);
+        int width = Math.max(max_column - min_column + 1, 0);
+        this.layout = createGrid(width, height, locations.size());
+        locations.forEach((name, location) -> this.layout.set(location.row - grid_row, location.column - grid_column, location.room));
+        version++;
     }
 
     @Override
@@ -71,12 +357,19 @@ public class MapLayout {
 }
 
 class RoomWithLocation {
-    public final Room room;
+    public Room room;
     public int row;
     public int column;
-    public boolean visited = false;
+    // The exits the room had when it was last placed, used to detect changes
+    EnumMap<Direction, String> exits;
+    // Whether `room` is the stub of a room of a streamed world that isn't loaded
+    boolean unloaded = false;
 
-    public RoomWithLocation(Room room) {
+    public RoomWithLocation(Room room, int row, int column) {
         this.room = room;
+        this.row = row;
+        this.column = column;
+        // Rooms replace their exits rather than modifying them, so they can be kept without copying
+        this.exits = room.paths;
     }
-}
\ No newline at end of file
+}
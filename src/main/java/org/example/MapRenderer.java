@@ -0,0 +1,143 @@
+package org.example;
+
+import java.util.HashMap;
+
+/// Renders a `MapLayout` as the ASCII map shown by the `map` command.
+///
+/// The full map is cached until the layout's version changes. Only the current room's delimiters depend on where the
+/// player is, so moving around patches the two cells involved instead of rendering the map again. Room names are
+/// assumed not to change without the layout changing as well.
+///
+/// Windowed maps only show the cells around the player. They aren't cached, as they only cost as much as the cells
+/// they show.
+public class MapRenderer {
+    /// The number of cells shown in each direction around the player by a plain `map` command
+    public static final int DEFAULT_VIEWPORT_RADIUS = 3;
+    private static final char[] DELIMITERS = {'[', ']'};
+    private static final String HORIZONTAL_CONNECTOR = "<=>";
+    private static final String NO_HORIZONTAL_CONNECTOR = " ".repeat(HORIZONTAL_CONNECTOR.length());
+
+    final MapLayout layout;
+    private final StringBuilder rendered = new StringBuilder();
+    // Where the delimiters of every room shown on the map are in the rendered map
+    private final HashMap<String, DelimiterOffsets> delimiter_offsets = new HashMap<>();
+    private long rendered_version = -1;
+    private String highlighted_room = null;
+
+    public MapRenderer(MapLayout layout) {
+        this.layout = layout;
+    }
+
+    /// Returns the whole map with the given room highlighted.
+    public String render(String current_room) {
+        if (rendered_version != layout.getVersion()) {
+            rendered.setLength(0);
+            delimiter_offsets.clear();
+            var grid = layout.layout;
+            renderCells(rendered, 0, 0, grid.getHeight() - 1, grid.getWidth() - 1, null, delimiter_offsets);
+            rendered_version = layout.getVersion();
+            highlighted_room = null;
+        }
+        if (!current_room.equals(highlighted_room)) {
+            setDelimiters(highlighted_room, ' ', ' ');
+            setDelimiters(current_room, DELIMITERS[0], DELIMITERS[1]);
+            highlighted_room = current_room;
+        }
+        return rendered.toString();
+    }
+
+    /// Returns the part of the map within `radius` cells of the given room, with that room highlighted. Falls back to
+    /// the whole map if the room isn't on it.
+    public String renderWindow(String current_room, int radius) {
+        var location = layout.locate(current_room);
+        if (location.isEmpty()) {
+            return render(current_room);
+        }
+        var grid = layout.layout;
+        // Clamped first, so adding it to the coordinates can't overflow
+        radius = Math.min(Math.max(radius, 0), Math.max(grid.getWidth(), grid.getHeight()));
+        var center = location.get();
+        var out = new StringBuilder();
+        renderCells(out,
+                Math.max(center.getRow() - radius, 0),
+                Math.max(center.getColumn() - radius, 0),
+                Math.min(center.getRow() + radius, grid.getHeight() - 1),
+                Math.min(center.getColumn() + radius, grid.getWidth() - 1),
+                current_room,
+                null);
+        return out.toString();
+    }
+
+    private void setDelimiters(String room_id, char open, char close) {
+        var offsets = room_id == null ? null : delimiter_offsets.get(room_id);
+        if (offsets == null) {
+            return;
+        }
+        rendered.setCharAt(offsets.open(), open);
+        rendered.setCharAt(offsets.close(), close);
+    }
+
+    // Renders the cells between the given rows and columns, inclusive. Connectors leading out of that area aren't
+    // shown. If `offsets` is given, the position of every room's delimiters is recorded in it.
+    private void renderCells(StringBuilder out, int top, int left, int bottom, int right,
+                             String current_room, HashMap<String, DelimiterOffsets> offsets) {
+        var grid = layout.layout;
+        out.append("Map:\n");
+        int room_name_length = 0;
+        for (int row_idx = top; row_idx <= bottom; row_idx++) {
+            for (int col_idx = left; col_idx <= right; col_idx++) {
+                var room = grid.get(row_idx, col_idx);
+                if (room != null) {
+                    room_name_length = Math.max(room_name_length, room.name.length());
+                }
+            }
+        }
+        var no_room = " ".repeat(room_name_length + DELIMITERS.length);
+        var vertical_connector = StringUtils.centerString("|", room_name_length + DELIMITERS.length);
+
+        for (int row_idx = top; row_idx <= bottom; row_idx++) {
+            // Print upper/north connectors
+            for (int col_idx = left; row_idx > top && col_idx <= right; col_idx++) {
+                var room = grid.get(row_idx, col_idx);
+
+                if (col_idx > left) {
+                    out.append(NO_HORIZONTAL_CONNECTOR);
+                }
+
+                if (room != null && room.getExitName(Direction.North) != null) {
+                    out.append(vertical_connector);
+                } else {
+                    out.append(no_room);
+                }
+            }
+            out.append('\n');
+            // Print room names and left/west connectors
+            for (int col_idx = left; col_idx <= right; col_idx++) {
+                var room = grid.get(row_idx, col_idx);
+                if (room == null) {
+                    if (col_idx > left) {
+                        out.append(NO_HORIZONTAL_CONNECTOR);
+                    }
+                    out.append(no_room);
+                    continue;
+                }
+                if (col_idx > left) {
+                    var connector = room.getExitName(Direction.West) != null ? HORIZONTAL_CONNECTOR : NO_HORIZONTAL_CONNECTOR;
+                    out.append(connector);
+                }
+                var display_delimiters = room.getId().equals(current_room) ? DELIMITERS : new char[]{' ', ' '};
+                var display_name = StringUtils.centerString(display_delimiters[0] + room.name + display_delimiters[1], room_name_length);
+                if (offsets != null) {
+                    // Matches the padding centerString puts before the name
+                    var open = out.length() + Math.max(room_name_length - room.name.length() - 2, 0) / 2;
+                    offsets.put(room.getId(), new DelimiterOffsets(open, open + room.name.length() + 1));
+                }
+                out.append(display_name);
+            }
+            out.append('\n');
+        }
+    }
+
+    private record DelimiterOffsets(int open, int close) {
+    }
+}
@@ -1,30 +1,38 @@
 package org.example;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-public class Matrix<T> implements Iterable<MatrixElement<T>> {
-    private final ArrayList<T> storage;
-    final int width;
-    final int height;
+public class Matrix<T> implements Grid<T>, Iterable<MatrixElement<T>> {
+    // Row-major storage, the element at (row, column) is at row * width + column
+    private Object[] storage;
+    int width;
+    int height;
 
     /// Creates a matrix with the given width and height, filling all elements with null.
     public Matrix(int width, int height) {
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException("Matrix dimensions must not be negative: " + width + "x" + height);
+        }
         this.width = width;
         this.height = height;
-        this.storage = new ArrayList<>(width * height);
-        for (int i = 0; i < width * height; i++) {
-            this.storage.add(null);
-        }
+        this.storage = new Object[Math.multiplyExact(width, height)];
     }
 
+    @Override
     public int getHeight() {
         return height;
     }
 
+    @Override
     public int getWidth() {
         return width;
     }
@@ -36,33 +44,65 @@ public class Matrix<T> implements Iterable<MatrixElement<T>> {
         throw new IndexOutOfBoundsException("Index (" + row + ", " + column + ") is out of bounds for matrix of size " + width + "x" + height);
     }
 
+    @Override
     public void set(int row, int column, T value) {
         checkBounds(row, column);
-        storage.set(row * width + column, value);
+        storage[row * width + column] = value;
     }
 
+    @Override
     public T get(int row, int column) {
         checkBounds(row, column);
-        return storage.get(row * width + column);
+        return elementAt(row * width + column);
     }
 
-    // Discards all elements in the matrix and resizes it to the given width and height.
+    @SuppressWarnings("unchecked")
+    T elementAt(int index) {
+        return (T) storage[index];
+    }
+
+    /// Discards all elements in the matrix and resizes it to the given width and height.
     public void resize(int width, int height) {
-        storage.clear();
-        if (this.width * this.height > width * height) {
-            storage.trimToSize();
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException("Matrix dimensions must not be negative: " + width + "x" + height);
+        }
+        var size = Math.multiplyExact(width, height);
+        if (size == storage.length) {
+            Arrays.fill(storage, null);
+        } else {
+            storage = new Object[size];
         }
-        storage.ensureCapacity(width * height);
-        for (int i = 0; i < width * height; i++) {
-            this.storage.add(null);
+        this.width = width;
+        this.height = height;
+    }
+
+    /// Sets every element of the matrix to the given value.
+    public void fill(T value) {
+        Arrays.fill(storage, value);
+    }
+
+    /// Calls the action with the position and value of every element, in row-major order, without allocating.
+    public void forEachIndexed(IndexedConsumer<? super T> action) {
+        int index = 0;
+        for (int row = 0; row < height; row++) {
+            for (int column = 0; column < width; column++) {
+                action.accept(row, column, elementAt(index++));
+            }
         }
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
     public List<T> row(int row) {
         if (row < 0 || row >= height) {
             throw new IndexOutOfBoundsException("Row " + row + " is out of bounds for matrix of size " + width + "x" + height);
         }
-        return this.storage.subList(row * width, (row + 1) * width);
+        return Arrays.asList((T[]) this.storage).subList(row * width, (row + 1) * width);
+    }
+
+    /// Returns a cursor positioned before the first element, which walks the matrix in row-major order.
+    public MatrixCursor<T> cursor() {
+        return new MatrixCursor<>(this);
     }
 
     @Override
@@ -70,12 +110,25 @@ public class Matrix<T> implements Iterable<MatrixElement<T>> {
         return new MatrixIterator<>(this);
     }
 
+    @Override
+    public Spliterator<MatrixElement<T>> spliterator() {
+        return new MatrixSpliterator<>(this, 0, width * height);
+    }
+
     public Stream<MatrixElement<T>> stream() {
-        return java.util.stream.StreamSupport.stream(this.spliterator(), false);
+        return StreamSupport.stream(this.spliterator(), false);
     }
 
+    /// Streams the values of the matrix in row-major order. The stream is sized and splits evenly, so it parallelizes well.
+    @Override
     public Stream<T> streamVal() {
-        return java.util.stream.StreamSupport.stream(this.spliterator(), false).map(v -> v.value);
+        Spliterator<T> values = Spliterators.spliterator(storage, 0, width * height, Spliterator.ORDERED);
+        return StreamSupport.stream(values, false);
+    }
+
+    @Override
+    public Stream<T> streamPresent() {
+        return streamVal().filter(Objects::nonNull);
     }
 
 
@@ -96,22 +149,24 @@ public class Matrix<T> implements Iterable<MatrixElement<T>> {
         }
         return "Matrix{width=" + width + ", height=" + height + ", data=[\n" + data + "]}";
     }
+
+    @FunctionalInterface
+    public interface IndexedConsumer<T> {
+        void accept(int row, int column, T value);
+    }
 }
 
 class MatrixIterator<T> implements Iterator<MatrixElement<T>> {
     private final Matrix<T> matrix;
-    private int row;
-    private int column;
+    private int index = 0;
 
     public MatrixIterator(Matrix<T> matrix) {
         this.matrix = matrix;
-        this.row = 0;
-        this.column = 0;
     }
 
     @Override
     public boolean hasNext() {
-        return this.column < matrix.width && this.row < matrix.height;
+        return index < matrix.width * matrix.height;
     }
 
     @Override
@@ -119,12 +174,51 @@ class MatrixIterator<T> implements Iterator<MatrixElement<T>> {
         if (!hasNext()) {
             throw new NoSuchElementException();
         }
-        var element = new MatrixElement<T>(row, column, null);
-        element.value = matrix.get(row, column++);
-        if (column >= matrix.width) {
-            column = 0;
-            row++;
-        }
+        var element = new MatrixElement<>(index / matrix.width, index % matrix.width, matrix.elementAt(index));
+        index++;
         return element;
     }
-}
\ No newline at end of file
+}
+
+class MatrixSpliterator<T> implements Spliterator<MatrixElement<T>> {
+    private final Matrix<T> matrix;
+    private int index;
+    private final int fence;
+
+    MatrixSpliterator(Matrix<T> matrix, int origin, int fence) {
+        this.matrix = matrix;
+        this.index = origin;
+        this.fence = fence;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super MatrixElement<T>> action) {
+        if (index >= fence) {
+            return false;
+        }
+        action.accept(new MatrixElement<>(index / matrix.width, index % matrix.width, matrix.elementAt(index)));
+        index++;
+        return true;
+    }
+
+    @Override
+    public Spliterator<MatrixElement<T>> trySplit() {
+        int middle = (index + fence) >>> 1;
+        if (middle <= index) {
+            return null;
+        }
+        var prefix = new MatrixSpliterator<>(matrix, index, middle);
+        index = middle;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return fence - index;
+    }
+
+    @Override
+    public int characteristics() {
+        return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.NONNULL;
+    }
+}
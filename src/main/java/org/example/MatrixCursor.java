@@ -0,0 +1,36 @@
+package org.example;
+
+/// A reusable position in a matrix, for walking it without allocating an element per cell.
+/// The matrix must not be resized while a cursor is in use.
+public class MatrixCursor<T> {
+    private final Matrix<T> matrix;
+    private int index = -1;
+
+    MatrixCursor(Matrix<T> matrix) {
+        this.matrix = matrix;
+    }
+
+    /// Moves to the next element, returning false once the cursor has moved past the last one.
+    public boolean next() {
+        if (index < matrix.width * matrix.height) {
+            index++;
+        }
+        return index < matrix.width * matrix.height;
+    }
+
+    public int row() {
+        return index / matrix.width;
+    }
+
+    public int column() {
+        return index % matrix.width;
+    }
+
+    public T value() {
+        return matrix.elementAt(index);
+    }
+
+    public void set(T value) {
+        matrix.set(row(), column(), value);
+    }
+}
@@ -0,0 +1,15 @@
+package org.example;
+
+import java.util.Map;
+
+/// Supplies rooms and items with custom behavior, which worlds and saves refer to by a type id. Providers are found with
+/// `ServiceLoader`: a module adds its own types by implementing this and declaring
+/// `provides org.example.ObjectTypeProvider with ...` in its `module-info.java`, or by listing the implementation in
+/// `META-INF/services/org.example.ObjectTypeProvider` on the class path.
+public interface ObjectTypeProvider {
+    /// Subclasses of `Room` by type id
+    Map<String, Class<? extends Room>> roomTypes();
+
+    /// Subclasses of `Item` by type id
+    Map<String, Class<? extends Item>> itemTypes();
+}
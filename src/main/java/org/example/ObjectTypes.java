@@ -0,0 +1,143 @@
+package org.example;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import tools.jackson.core.JacksonException;
+import tools.jackson.core.JsonParser;
+import tools.jackson.databind.DatabindContext;
+import tools.jackson.databind.DeserializationContext;
+import tools.jackson.databind.JavaType;
+import tools.jackson.databind.ValueDeserializer;
+import tools.jackson.databind.jsontype.impl.TypeIdResolverBase;
+import tools.jackson.databind.node.ObjectNode;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.ServiceLoader;
+
+/// The rooms and items with custom behavior, by the type id stored in their `type` property. Every
+/// `ObjectTypeProvider` found by `ServiceLoader` is asked for its types once, on first use.
+///
+/// Rooms and items without a type id are plain `Room`s and `Item`s. Jackson picks the class of every room and item from
+/// its type id through `Resolver`, so adding a type only takes a provider, and a world may hold any number of objects of
+/// each type.
+final class ObjectTypes {
+    static final ObjectTypes INSTANCE = new ObjectTypes(ServiceLoader.load(ObjectTypeProvider.class));
+
+    private final HashMap<String, Class<? extends Room>> room_types = new HashMap<>();
+    private final HashMap<String, Class<? extends Item>> item_types = new HashMap<>();
+    private final HashMap<Class<?>, String> ids = new HashMap<>();
+
+    ObjectTypes(Iterable<ObjectTypeProvider> providers) {
+        for (var provider : providers) {
+            provider.roomTypes().forEach((id, type) -> register(room_types, id, type));
+            provider.itemTypes().forEach((id, type) -> register(item_types, id, type));
+        }
+    }
+
+    private <T> void register(HashMap<String, Class<? extends T>> types, String id, Class<? extends T> type) {
+        var previous = types.putIfAbsent(id, type);
+        if (previous != null) {
+            throw new IllegalStateException("Type id \"" + id + "\" is claimed by both " + previous.getName() + " and " + type.getName());
+        }
+        var previous_id = ids.putIfAbsent(type, id);
+        if (previous_id != null) {
+            throw new IllegalStateException(type.getName() + " is registered as both \"" + previous_id + "\" and \"" + id + "\"");
+        }
+    }
+
+    Optional<Class<? extends Room>> roomType(String id) {
+        return Optional.ofNullable(room_types.get(id));
+    }
+
+    Optional<Class<? extends Item>> itemType(String id) {
+        return Optional.ofNullable(item_types.get(id));
+    }
+
+    /// Returns the type id of a room or item, or null for plain ones.
+    String idOf(Object object) {
+        return ids.get(object.getClass());
+    }
+
+    /// Looks up the class of a room or item by the type id Jackson read from its `type` property. An unknown type, such
+    /// as one whose provider is no longer on the module path, is loaded as a plain room or item.
+    static final class Resolver extends TypeIdResolverBase {
+        private static final long serialVersionUID = 1L;
+
+        private JavaType base_type;
+
+        @Override
+        public void init(JavaType base_type) {
+            this.base_type = base_type;
+        }
+
+        @Override
+        public String idFromValue(DatabindContext context, Object value) {
+            return INSTANCE.idOf(value);
+        }
+
+        @Override
+        public String idFromValueAndType(DatabindContext context, Object value, Class<?> type) {
+            return INSTANCE.ids.get(type);
+        }
+
+        @Override
+        public JavaType typeFromId(DatabindContext context, String id) throws JacksonException {
+            var base = base_type.getRawClass();
+            var type = Room.class.isAssignableFrom(base) ? INSTANCE.roomType(id) : INSTANCE.itemType(id);
+            if (type.isEmpty() || !base.isAssignableFrom(type.get())) {
+                System.err.println("Unknown " + base.getSimpleName().toLowerCase() + " type \"" + id + "\", loading it without its behavior.");
+                return base_type;
+            }
+            return context.constructType(type.get());
+        }
+
+        @Override
+        public String getDescForKnownTypeIds() {
+            return String.join(", ", Room.class.isAssignableFrom(base_type.getRawClass()) ? INSTANCE.room_types.keySet() : INSTANCE.item_types.keySet());
+        }
+
+        @Override
+        public JsonTypeInfo.Id getMechanism() {
+            return JsonTypeInfo.Id.CUSTOM;
+        }
+    }
+
+    /// Reads the `typed_rooms` and `typed_items` of saves from before type ids, which kept the objects with custom
+    /// behavior apart from the others, named after their type.
+    private static abstract class LegacyTyped<T> extends ValueDeserializer<Map<String, T>> {
+        private final Class<T> base;
+
+        LegacyTyped(Class<T> base) {
+            this.base = base;
+        }
+
+        @Override
+        public Map<String, T> deserialize(JsonParser parser, DeserializationContext context) throws JacksonException {
+            var objects = new LinkedHashMap<String, T>();
+            if (!(context.readTree(parser) instanceof ObjectNode tree)) {
+                return objects;
+            }
+            for (var entry : tree.properties()) {
+                if (entry.getValue() instanceof ObjectNode object) {
+                    object.put("type", entry.getKey());
+                    objects.put(entry.getKey(), context.readTreeAsValue(object, base));
+                }
+            }
+            return objects;
+        }
+    }
+
+    static final class LegacyRooms extends LegacyTyped<Room> {
+        LegacyRooms() {
+            super(Room.class);
+        }
+    }
+
+    static final class LegacyItems extends LegacyTyped<Item> {
+        LegacyItems() {
+            super(Item.class);
+        }
+    }
+}
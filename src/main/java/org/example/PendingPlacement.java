@@ -0,0 +1,6 @@
+package org.example;
+
+/// A room waiting to be placed on the map at a known position, such as the target of an exit or a room whose position
+/// was compiled into a world image or region index.
+record PendingPlacement(String name, int row, int column) {
+}
@@ -0,0 +1,464 @@
+package org.example;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/// An immutable hash map. `with` and `without` return a new map that shares everything but the changed path with the
+/// old one, so keeping a copy of a map is free and changing one entry of a large map only copies a few small arrays.
+///
+/// The map is a hash array mapped trie. Every level consumes 5 bits of the key's hash, and holds a bitmap of the slots
+/// in use followed by only those slots, so sparse levels stay small. Keys with the same hash share a collision node.
+/// Keys can't be null. The `Map` methods that would modify the map in place throw `UnsupportedOperationException`.
+public final class PersistentMap<K, V> extends AbstractMap<K, V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final Object NOT_FOUND = new Object();
+    // Rough sizes for estimating the heap a version of a map retains, assuming compressed references
+    private static final long NODE_BYTES = 24;
+    private static final long ARRAY_BYTES = 16;
+    private static final long REFERENCE_BYTES = 4;
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(BitmapNode.EMPTY, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    /// Returns a persistent map with the same entries. Persistent maps are returned as they are.
+    @JsonCreator
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> copyOf(Map<? extends K, ? extends V> map) {
+        if (map instanceof PersistentMap<?, ?> persistent) {
+            return (PersistentMap<K, V>) persistent;
+        }
+        var added = new boolean[1];
+        Node root = BitmapNode.EMPTY;
+        for (var entry : map.entrySet()) {
+            var key = Objects.requireNonNull(entry.getKey());
+            root = root.put(0, hash(key), key, entry.getValue(), added);
+        }
+        return new PersistentMap<>(root, map.size());
+    }
+
+    /// Returns a map with the key mapped to the value. Returns this map if it already holds that exact value.
+    public PersistentMap<K, V> with(K key, V value) {
+        var added = new boolean[1];
+        var new_root = root.put(0, hash(Objects.requireNonNull(key)), key, value, added);
+        if (new_root == root) {
+            return this;
+        }
+        return new PersistentMap<>(new_root, added[0] ? size + 1 : size);
+    }
+
+    /// Returns a map without the key. Returns this map if it doesn't hold the key.
+    public PersistentMap<K, V> without(Object key) {
+        if (key == null) {
+            return this;
+        }
+        var new_root = root.remove(0, hash(key), key);
+        if (new_root == root) {
+            return this;
+        }
+        return new_root == null ? empty() : new PersistentMap<>(new_root, size - 1);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        var value = find(key);
+        return value == NOT_FOUND ? null : (V) value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) != NOT_FOUND;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        root.forEach((BiConsumer<Object, Object>) action);
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new EntryIterator<>(root);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /// Calls the action for every entry of this map whose value isn't the very same object in the other map, and returns
+    /// roughly how many bytes of this map's trie the other map doesn't share. Parts of the trie both maps share are
+    /// skipped, so comparing a map with another version of itself only visits the paths that changed in between.
+    public long forEachNotSharedWith(PersistentMap<K, V> other, BiConsumer<? super K, ? super V> action) {
+        @SuppressWarnings("unchecked")
+        var untyped_action = (BiConsumer<Object, Object>) action;
+        return notSharedWith(root, 0, other.root, 0, untyped_action);
+    }
+
+    // Compares a node with the other map's node that covers the same keys, or with a node higher up the other trie when
+    // the other trie has no node there, which is then only used to look keys up
+    private static long notSharedWith(Node node, int shift, Node other, int other_shift, BiConsumer<Object, Object> action) {
+        if (node == other) {
+            return 0;
+        }
+        var array = node instanceof BitmapNode bitmap_node ? bitmap_node.array : ((CollisionNode) node).array;
+        var bytes = NODE_BYTES + ARRAY_BYTES + REFERENCE_BYTES * array.length;
+        for (int i = 0; i < array.length; i += 2) {
+            if (array[i] != null) {
+                if (find(other, other_shift, hash(array[i]), array[i]) != array[i + 1]) {
+                    action.accept(array[i], array[i + 1]);
+                }
+                continue;
+            }
+            var child = (Node) array[i + 1];
+            var other_child = other;
+            var other_child_shift = other_shift;
+            if (other_shift == shift && other instanceof BitmapNode other_bitmap) {
+                var bit = 1 << ((hash(firstKey(child)) >>> shift) & MASK);
+                if ((other_bitmap.bitmap & bit) != 0 && other_bitmap.array[other_bitmap.index(bit)] == null) {
+                    other_child = (Node) other_bitmap.array[other_bitmap.index(bit) + 1];
+                    other_child_shift = shift + BITS;
+                }
+            }
+            bytes += notSharedWith(child, shift + BITS, other_child, other_child_shift, action);
+        }
+        return bytes;
+    }
+
+    // Any key below the node, which tells the slot the node occupies in its parent
+    private static Object firstKey(Node node) {
+        while (true) {
+            var array = node instanceof BitmapNode bitmap_node ? bitmap_node.array : ((CollisionNode) node).array;
+            if (array[0] != null) {
+                return array[0];
+            }
+            node = (Node) array[1];
+        }
+    }
+
+    private Object find(Object key) {
+        if (key == null) {
+            return NOT_FOUND;
+        }
+        return find(root, 0, hash(key), key);
+    }
+
+    // Looks the key up below a node without allocating, walking down the trie iteratively
+    private static Object find(Node node, int shift, int hash, Object key) {
+        while (true) {
+            if (node instanceof BitmapNode bitmap_node) {
+                var bit = 1 << ((hash >>> shift) & MASK);
+                if ((bitmap_node.bitmap & bit) == 0) {
+                    return NOT_FOUND;
+                }
+                var index = bitmap_node.index(bit);
+                var slot_key = bitmap_node.array[index];
+                if (slot_key == null) {
+                    node = (Node) bitmap_node.array[index + 1];
+                    shift += BITS;
+                    continue;
+                }
+                return key.equals(slot_key) ? bitmap_node.array[index + 1] : NOT_FOUND;
+            }
+            return ((CollisionNode) node).find(hash, key);
+        }
+    }
+
+    // Spreads the higher bits, so keys whose hashes only differ there don't all end up in one deep path
+    private static int hash(Object key) {
+        var hash = key.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    private static abstract sealed class Node permits BitmapNode, CollisionNode {
+        /// Returns a node with the key mapped to the value, or this node if nothing changed. Sets `added[0]` if the key
+        /// wasn't in the node before.
+        abstract Node put(int shift, int hash, Object key, Object value, boolean[] added);
+
+        /// Returns a node without the key, this node if it doesn't hold the key, or null if the node is left empty.
+        abstract Node remove(int shift, int hash, Object key);
+
+        abstract void forEach(BiConsumer<Object, Object> action);
+    }
+
+    // Holds a key and value pair per used slot, or null and a child node for slots with more than one key
+    private static final class BitmapNode extends Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        final int bitmap;
+        final Object[] array;
+
+        BitmapNode(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        // Position of the slot's key in the array, the value or child follows it
+        int index(int bit) {
+            return 2 * Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        Node put(int shift, int hash, Object key, Object value, boolean[] added) {
+            var bit = 1 << ((hash >>> shift) & MASK);
+            var index = index(bit);
+            if ((bitmap & bit) == 0) {
+                var new_array = new Object[array.length + 2];
+                System.arraycopy(array, 0, new_array, 0, index);
+                new_array[index] = key;
+                new_array[index + 1] = value;
+                System.arraycopy(array, index, new_array, index + 2, array.length - index);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, new_array);
+            }
+            var slot_key = array[index];
+            var slot_value = array[index + 1];
+            if (slot_key == null) {
+                var child = (Node) slot_value;
+                var new_child = child.put(shift + BITS, hash, key, value, added);
+                return new_child == child ? this : withSlot(index + 1, new_child);
+            }
+            if (key.equals(slot_key)) {
+                return slot_value == value ? this : withSlot(index + 1, value);
+            }
+            added[0] = true;
+            var new_array = array.clone();
+            new_array[index] = null;
+            new_array[index + 1] = pair(shift + BITS, PersistentMap.hash(slot_key), slot_key, slot_value, hash, key, value);
+            return new BitmapNode(bitmap, new_array);
+        }
+
+        @Override
+        Node remove(int shift, int hash, Object key) {
+            var bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            var index = index(bit);
+            var slot_key = array[index];
+            if (slot_key == null) {
+                var child = (Node) array[index + 1];
+                var new_child = child.remove(shift + BITS, hash, key);
+                if (new_child == child) {
+                    return this;
+                }
+                if (new_child == null) {
+                    return withoutSlot(bit, index);
+                }
+                // A child left with a single key is folded into this node, so removals don't leave long paths behind
+                if (new_child instanceof BitmapNode bitmap_child && bitmap_child.array.length == 2 && bitmap_child.array[0] != null) {
+                    var new_array = array.clone();
+                    new_array[index] = bitmap_child.array[0];
+                    new_array[index + 1] = bitmap_child.array[1];
+                    return new BitmapNode(bitmap, new_array);
+                }
+                return withSlot(index + 1, new_child);
+            }
+            return key.equals(slot_key) ? withoutSlot(bit, index) : this;
+        }
+
+        @Override
+        void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i] == null) {
+                    ((Node) array[i + 1]).forEach(action);
+                } else {
+                    action.accept(array[i], array[i + 1]);
+                }
+            }
+        }
+
+        private BitmapNode withSlot(int index, Object value) {
+            var new_array = array.clone();
+            new_array[index] = value;
+            return new BitmapNode(bitmap, new_array);
+        }
+
+        private BitmapNode withoutSlot(int bit, int index) {
+            if (bitmap == bit) {
+                return null;
+            }
+            var new_array = new Object[array.length - 2];
+            System.arraycopy(array, 0, new_array, 0, index);
+            System.arraycopy(array, index + 2, new_array, index, array.length - index - 2);
+            return new BitmapNode(bitmap ^ bit, new_array);
+        }
+
+        // Builds the node holding two keys that ended up in the same slot of the level above
+        private static Node pair(int shift, int hash_1, Object key_1, Object value_1, int hash_2, Object key_2, Object value_2) {
+            if (hash_1 == hash_2) {
+                return new CollisionNode(hash_1, new Object[]{key_1, value_1, key_2, value_2});
+            }
+            var index_1 = (hash_1 >>> shift) & MASK;
+            var index_2 = (hash_2 >>> shift) & MASK;
+            if (index_1 == index_2) {
+                return new BitmapNode(1 << index_1, new Object[]{null, pair(shift + BITS, hash_1, key_1, value_1, hash_2, key_2, value_2)});
+            }
+            var array = index_1 < index_2
+                    ? new Object[]{key_1, value_1, key_2, value_2}
+                    : new Object[]{key_2, value_2, key_1, value_1};
+            return new BitmapNode((1 << index_1) | (1 << index_2), array);
+        }
+    }
+
+    // Keys whose hashes are equal in all 32 bits, as key and value pairs
+    private static final class CollisionNode extends Node {
+        final int hash;
+        final Object[] array;
+
+        CollisionNode(int hash, Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        Object find(int hash, Object key) {
+            if (hash != this.hash) {
+                return NOT_FOUND;
+            }
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return array[i + 1];
+                }
+            }
+            return NOT_FOUND;
+        }
+
+        @Override
+        Node put(int shift, int hash, Object key, Object value, boolean[] added) {
+            if (hash != this.hash) {
+                // Moved one level down below a node that tells the two hashes apart
+                var wrapper = new BitmapNode(1 << ((this.hash >>> shift) & MASK), new Object[]{null, this});
+                return wrapper.put(shift, hash, key, value, added);
+            }
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    if (array[i + 1] == value) {
+                        return this;
+                    }
+                    var new_array = array.clone();
+                    new_array[i + 1] = value;
+                    return new CollisionNode(hash, new_array);
+                }
+            }
+            var new_array = new Object[array.length + 2];
+            System.arraycopy(array, 0, new_array, 0, array.length);
+            new_array[array.length] = key;
+            new_array[array.length + 1] = value;
+            added[0] = true;
+            return new CollisionNode(hash, new_array);
+        }
+
+        @Override
+        Node remove(int shift, int hash, Object key) {
+            if (hash != this.hash) {
+                return this;
+            }
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    if (array.length == 2) {
+                        return null;
+                    }
+                    var new_array = new Object[array.length - 2];
+                    System.arraycopy(array, 0, new_array, 0, i);
+                    System.arraycopy(array, i + 2, new_array, i, array.length - i - 2);
+                    return new CollisionNode(hash, new_array);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                action.accept(array[i], array[i + 1]);
+            }
+        }
+    }
+
+    // Walks the trie depth first, with a stack of the arrays being visited and the position within each
+    private static final class EntryIterator<K, V> implements Iterator<Entry<K, V>> {
+        // 7 levels consume all 32 bits of the hash, a collision node may sit below the last one
+        private static final int MAX_DEPTH = 8;
+
+        private final Object[][] arrays = new Object[MAX_DEPTH][];
+        private final int[] positions = new int[MAX_DEPTH];
+        private int depth = -1;
+        private Entry<K, V> next;
+
+        EntryIterator(Node root) {
+            push(root);
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            var current = next;
+            advance();
+            return current;
+        }
+
+        private void push(Node node) {
+            depth++;
+            arrays[depth] = node instanceof BitmapNode bitmap_node ? bitmap_node.array : ((CollisionNode) node).array;
+            positions[depth] = 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                var array = arrays[depth];
+                var position = positions[depth];
+                if (position >= array.length) {
+                    arrays[depth--] = null;
+                    continue;
+                }
+                positions[depth] = position + 2;
+                if (array[position] == null) {
+                    push((Node) array[position + 1]);
+                    continue;
+                }
+                next = new SimpleImmutableEntry<>((K) array[position], (V) array[position + 1]);
+                return;
+            }
+        }
+    }
+}
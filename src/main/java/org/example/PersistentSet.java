@@ -0,0 +1,75 @@
+package org.example;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/// An immutable hash set, the keys of a `PersistentMap`. `with` and `without` return a new set that shares most of its
+/// structure with the old one.
+public final class PersistentSet<E> extends AbstractSet<E> {
+    private static final PersistentSet<?> EMPTY = new PersistentSet<>(PersistentMap.empty());
+
+    private final PersistentMap<E, Boolean> map;
+
+    private PersistentSet(PersistentMap<E, Boolean> map) {
+        this.map = map;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentSet<E> empty() {
+        return (PersistentSet<E>) EMPTY;
+    }
+
+    /// Returns a persistent set with the same elements. Persistent sets are returned as they are.
+    @JsonCreator
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentSet<E> copyOf(Collection<? extends E> elements) {
+        if (elements instanceof PersistentSet<?> persistent) {
+            return (PersistentSet<E>) persistent;
+        }
+        var set = PersistentSet.<E>empty();
+        for (var element : elements) {
+            set = set.with(element);
+        }
+        return set;
+    }
+
+    public PersistentSet<E> with(E element) {
+        var new_map = map.with(element, Boolean.TRUE);
+        return new_map == map ? this : new PersistentSet<>(new_map);
+    }
+
+    public PersistentSet<E> without(Object element) {
+        var new_map = map.without(element);
+        return new_map == map ? this : new_map.isEmpty() ? empty() : new PersistentSet<>(new_map);
+    }
+
+    /// Returns roughly how many bytes of this set the other set doesn't share, see `PersistentMap.forEachNotSharedWith`.
+    public long bytesNotSharedWith(PersistentSet<E> other) {
+        return map.forEachNotSharedWith(other.map, (_, _) -> {
+        });
+    }
+
+    @Override
+    public boolean contains(Object element) {
+        return map.containsKey(element);
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return map.keySet().iterator();
+    }
+
+    @Override
+    public void forEach(Consumer<? super E> action) {
+        map.forEach((element, _) -> action.accept(element));
+    }
+}
@@ -2,11 +2,10 @@ package org.example;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 
-import java.util.HashSet;
-
-public class Player {
+public class Player implements Cloneable {
+    // Replaced rather than modified, so snapshots of the game can share it
     @JsonProperty("items")
-    final HashSet<String> items = new HashSet<>();
+    PersistentSet<String> items = PersistentSet.empty();
     @JsonProperty("name")
     private String name;
     @JsonProperty("room")
@@ -16,10 +15,18 @@ public class Player {
         return name;
     }
 
+    Player copy() {
+        try {
+            return (Player) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
     public String getItemString(GameState context) {
         StringBuilder sb = new StringBuilder();
         for (String item : items) {
-            sb.append(context.loaded_items.get(item).getName()).append(" ");
+            sb.append(context.item(item).getName()).append(" ");
         }
         return sb.toString().trim();
     }
@@ -33,11 +40,11 @@ public class Player {
     }
 
     public void removeItem(String item_name) {
-        items.remove(item_name);
+        items = items.without(item_name);
     }
 
     public void addItem(String item_name) {
-        items.add(item_name);
+        items = items.with(item_name);
     }
 
     public boolean hasItem(String item_name) {
@@ -6,14 +6,14 @@ import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-public class RegexCommandHelper<R> {
+public class RegexCommandHelper {
     private final Pattern minimal_pattern;
     private final Pattern complete_pattern;
     private final String incomplete_message;
-    private final Function<Matcher, Optional<R>> complete_callback;
+    private final Function<Matcher, Optional<Command>> complete_callback;
 
     public RegexCommandHelper(
-            String minimal_pattern, String complete_pattern, String incomplete_message, Function<Matcher, Optional<R>> complete_callback) {
+            String minimal_pattern, String complete_pattern, String incomplete_message, Function<Matcher, Optional<Command>> complete_callback) {
         this(
                 minimal_pattern,
                 Pattern.compile(complete_pattern),
@@ -22,18 +22,19 @@ public class RegexCommandHelper<R> {
     }
 
     public RegexCommandHelper(
-            String minimal_pattern, Pattern complete_pattern, String incomplete_message, Function<Matcher, Optional<R>> complete_callback) {
+            String minimal_pattern, Pattern complete_pattern, String incomplete_message, Function<Matcher, Optional<Command>> complete_callback) {
         this.minimal_pattern = Pattern.compile(minimal_pattern);
         this.complete_pattern = complete_pattern;
         this.incomplete_message = incomplete_message;
         this.complete_callback = complete_callback;
     }
 
-    public Optional<R> apply(String text) {
+    public Optional<Command> apply(String text) {
         var complete_matcher = complete_pattern.matcher(text);
         if (!complete_matcher.matches()) {
             if (minimal_pattern.matcher(text).matches()) {
-                System.out.println(incomplete_message);
+                // Reported through the game's view, so it reaches the player that typed it
+                return Optional.of(new IncompleteCommand(incomplete_message));
             }
             return Optional.empty();
         }
@@ -52,10 +53,4 @@ public class RegexCommandHelper<R> {
             output.add(candidate);
         }
     }
-
-    private static final Pattern JSON_PATTERN = Pattern.compile("\\.json$");
-
-    public static String trimJsonExtension(String name) {
-        return JSON_PATTERN.matcher(name).replaceFirst("");
-    }
 }
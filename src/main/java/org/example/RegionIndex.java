@@ -0,0 +1,287 @@
+package org.example;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+/// The directory of a world split into regions(see `WorldRegions`): the region and map position of every room, the
+/// region of every item, and the item every lowercase name and alias refers to.
+///
+/// The index is memory-mapped and its tables are sorted by key, so every lookup is a binary search over pages the OS
+/// loads on demand. Opening it costs the same for any size of world, and it takes no heap.
+final class RegionIndex {
+    static final String FILE = "world.index";
+    private static final int MAGIC = 0x5A524931; // "ZRI1"
+    private static final int VERSION = 1;
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+    private static final int NONE = -1;
+
+    // The header is a sequence of ints, at these indices
+    private static final int HEADER_MAGIC = 0, HEADER_VERSION = 1, HEADER_REGIONS = 2, HEADER_ROOMS = 3,
+            HEADER_ITEMS = 4, HEADER_NAMES = 5, HEADER_REGIONS_OFFSET = 6, HEADER_REGION_ROOMS_OFFSET = 7,
+            HEADER_ROOMS_OFFSET = 8, HEADER_ITEMS_OFFSET = 9, HEADER_NAMES_OFFSET = 10, HEADER_STRINGS_OFFSET = 11;
+    private static final int HEADER_SIZE = 12 * Integer.BYTES;
+    // Ints per record. Keys are the offset and length of a string. A room is its id, region, row and column.
+    private static final int ROOM_INTS = 5;
+    // An item is its id and region
+    private static final int ITEM_INTS = 3;
+    // A name is the name and the id of the item it refers to
+    private static final int NAME_INTS = 4;
+    // A region is the range of its rooms in the region rooms table, which lists room records by index
+    private static final int REGION_INTS = 2;
+
+    private final MemorySegment index;
+    private final int regions, rooms, items, names;
+    private final long regions_offset, region_rooms_offset, rooms_offset, items_offset, names_offset, strings_offset;
+
+    private RegionIndex(MemorySegment index) throws IOException {
+        this.index = index;
+        if (index.byteSize() < HEADER_SIZE || header(HEADER_MAGIC) != MAGIC || header(HEADER_VERSION) != VERSION) {
+            throw new IOException("Not a region index");
+        }
+        regions = header(HEADER_REGIONS);
+        rooms = header(HEADER_ROOMS);
+        items = header(HEADER_ITEMS);
+        names = header(HEADER_NAMES);
+        regions_offset = header(HEADER_REGIONS_OFFSET);
+        region_rooms_offset = header(HEADER_REGION_ROOMS_OFFSET);
+        rooms_offset = header(HEADER_ROOMS_OFFSET);
+        items_offset = header(HEADER_ITEMS_OFFSET);
+        names_offset = header(HEADER_NAMES_OFFSET);
+        strings_offset = header(HEADER_STRINGS_OFFSET);
+    }
+
+    static RegionIndex open(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // Unmapped once the world isn't used anymore
+            return new RegionIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), Arena.ofAuto()));
+        }
+    }
+
+    int regionCount() {
+        return regions;
+    }
+
+    /// Returns the region of a room, or nothing if the world doesn't have the room.
+    OptionalInt roomRegion(String id) {
+        var record = find(rooms_offset, rooms, ROOM_INTS, id);
+        return record == NONE ? OptionalInt.empty() : OptionalInt.of(intAt(record, 2));
+    }
+
+    /// Returns where a room is on the map of the whole world.
+    Optional<PendingPlacement> placement(String id) {
+        var record = find(rooms_offset, rooms, ROOM_INTS, id);
+        return record == NONE ? Optional.empty() : Optional.of(new PendingPlacement(id, intAt(record, 3), intAt(record, 4)));
+    }
+
+    /// Returns where the rooms that are in the world are on its map.
+    List<PendingPlacement> placements(Collection<String> ids) {
+        var placements = new ArrayList<PendingPlacement>(ids.size());
+        for (var id : ids) {
+            placement(id).ifPresent(placements::add);
+        }
+        return placements;
+    }
+
+    /// Returns the ids of the rooms a region was compiled with.
+    List<String> roomsOf(int region) {
+        if (region < 0 || region >= regions) {
+            return List.of();
+        }
+        long record = regions_offset + (long) region * REGION_INTS * Integer.BYTES;
+        int first = intAt(record, 0), count = intAt(record, 1);
+        var ids = new String[count];
+        for (int i = 0; i < count; i++) {
+            var room = index.get(INT, region_rooms_offset + (long) (first + i) * Integer.BYTES);
+            ids[i] = string(rooms_offset + (long) room * ROOM_INTS * Integer.BYTES, 0);
+        }
+        return List.of(ids);
+    }
+
+    /// Returns the region an item was compiled into, or nothing for the items every game keeps loaded.
+    OptionalInt itemRegion(String id) {
+        var record = find(items_offset, items, ITEM_INTS, id);
+        return record == NONE ? OptionalInt.empty() : OptionalInt.of(intAt(record, 2));
+    }
+
+    /// Returns the id of the item a lowercase name or alias referred to when the world was compiled.
+    Optional<String> itemNamed(String lowercase_name) {
+        var record = find(names_offset, names, NAME_INTS, lowercase_name);
+        return record == NONE ? Optional.empty() : Optional.of(string(record, 2));
+    }
+
+    private int header(int index) {
+        return this.index.get(INT, (long) index * Integer.BYTES);
+    }
+
+    private int intAt(long record, int index) {
+        return this.index.get(INT, record + (long) index * Integer.BYTES);
+    }
+
+    // Decodes the string whose offset and length are at the given index of a record
+    private String string(long record, int index) {
+        var bytes = this.index.asSlice(strings_offset + intAt(record, index), intAt(record, index + 1)).toArray(ValueLayout.JAVA_BYTE);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Binary search for the record whose key is the given string, in a table sorted by the keys' UTF-8 bytes
+    private long find(long table, int count, int ints, String key) {
+        var key_segment = MemorySegment.ofArray(key.getBytes(StandardCharsets.UTF_8));
+        int low = 0, high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long record = table + (long) middle * ints * Integer.BYTES;
+            int comparison = compareKey(record, key_segment);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return record;
+            }
+        }
+        return NONE;
+    }
+
+    private int compareKey(long record, MemorySegment key) {
+        long offset = strings_offset + intAt(record, 0);
+        long length = intAt(record, 1);
+        long mismatch = MemorySegment.mismatch(index, offset, offset + length, key, 0, key.byteSize());
+        if (mismatch == -1) {
+            return 0;
+        }
+        if (mismatch == length) {
+            return -1;
+        }
+        if (mismatch == key.byteSize()) {
+            return 1;
+        }
+        return Integer.compare(Byte.toUnsignedInt(index.get(ValueLayout.JAVA_BYTE, offset + mismatch)),
+                Byte.toUnsignedInt(key.get(ValueLayout.JAVA_BYTE, mismatch)));
+    }
+
+    record RoomEntry(int region, int row, int column) {
+    }
+
+    /// Compiles an index of the given rooms by id, the regions' rooms in order, items by id and item ids by lowercase
+    /// name.
+    static byte[] compile(Map<String, RoomEntry> room_entries, List<List<String>> region_rooms,
+                          Map<String, Integer> item_regions, Map<String, String> item_names) throws IOException {
+        var strings = new StringData();
+        var room_ids = sorted(room_entries.keySet());
+        var room_indices = new HashMap<String, Integer>();
+        var room_table = new IntTable();
+        for (var id : room_ids) {
+            var entry = room_entries.get(id);
+            room_indices.put(id, room_indices.size());
+            strings.add(room_table, id);
+            room_table.add(entry.region(), entry.row(), entry.column());
+        }
+        var region_table = new IntTable();
+        var region_room_table = new IntTable();
+        for (var region : region_rooms) {
+            region_table.add(region_room_table.size(), region.size());
+            for (var id : region) {
+                region_room_table.add(room_indices.get(id));
+            }
+        }
+        var item_table = new IntTable();
+        for (var id : sorted(item_regions.keySet())) {
+            strings.add(item_table, id);
+            item_table.add(item_regions.get(id));
+        }
+        var name_table = new IntTable();
+        for (var name : sorted(item_names.keySet())) {
+            strings.add(name_table, name);
+            strings.add(name_table, item_names.get(name));
+        }
+
+        int regions_offset = HEADER_SIZE;
+        int region_rooms_offset = regions_offset + region_table.bytes();
+        int rooms_offset = region_rooms_offset + region_room_table.bytes();
+        int items_offset = rooms_offset + room_table.bytes();
+        int names_offset = items_offset + item_table.bytes();
+        int strings_offset = names_offset + name_table.bytes();
+
+        var bytes = new ByteArrayOutputStream();
+        var out = new DataOutputStream(bytes);
+        for (var value : new int[]{MAGIC, VERSION, region_rooms.size(), room_ids.size(), item_regions.size(),
+                item_names.size(), regions_offset, region_rooms_offset, rooms_offset, items_offset, names_offset,
+                strings_offset}) {
+            out.writeInt(value);
+        }
+        for (var table : List.of(region_table, region_room_table, room_table, item_table, name_table)) {
+            table.writeTo(out);
+        }
+        strings.data.writeTo(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    // Sorted by UTF-8 bytes, which is the order `find` searches in
+    private static List<String> sorted(Collection<String> keys) {
+        var sorted = new ArrayList<>(keys);
+        sorted.sort((a, b) -> Arrays.compareUnsigned(a.getBytes(StandardCharsets.UTF_8), b.getBytes(StandardCharsets.UTF_8)));
+        return sorted;
+    }
+
+    private static class IntTable {
+        private int[] values = new int[64];
+        private int size = 0;
+
+        void add(int... added) {
+            if (size + added.length > values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 2, size + added.length));
+            }
+            System.arraycopy(added, 0, values, size, added.length);
+            size += added.length;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int bytes() {
+            return size * Integer.BYTES;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            for (int i = 0; i < size; i++) {
+                out.writeInt(values[i]);
+            }
+        }
+    }
+
+    // Stores every distinct string once
+    private static class StringData {
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        private final HashMap<String, int[]> ranges = new HashMap<>();
+
+        // Adds the offset and length of the string to a record
+        void add(IntTable table, String string) {
+            var range = ranges.computeIfAbsent(string, s -> {
+                var bytes = s.getBytes(StandardCharsets.UTF_8);
+                var offset = data.size();
+                data.writeBytes(bytes);
+                return new int[]{offset, bytes.length};
+            });
+            table.add(range);
+        }
+    }
+}
@@ -1,28 +1,50 @@
 package org.example;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import tools.jackson.databind.annotation.JsonTypeIdResolver;
 
 import java.util.EnumMap;
-import java.util.HashSet;
+import java.util.function.Supplier;
 
-public class Room {
+/// A room of the world. Rooms are shared between a game, its snapshots and copies of it until one of them modifies the
+/// room, which is why the items and exits are replaced rather than modified. Modify a room obtained from
+/// `GameState.roomForUpdate`, which copies a shared room first.
+///
+/// Rooms with custom behavior are subclasses, registered with a type id by an `ObjectTypeProvider`.
+@JsonTypeInfo(use = JsonTypeInfo.Id.CUSTOM, include = JsonTypeInfo.As.EXISTING_PROPERTY, property = "type", defaultImpl = Room.class)
+@JsonTypeIdResolver(ObjectTypes.Resolver.class)
+public class Room implements Cloneable {
     @JsonProperty("items")
-    final
-    HashSet<String> items = new HashSet<>();
+    PersistentSet<String> items = PersistentSet.empty();
     @JsonProperty("description")
     private String description;
     @JsonProperty("paths")
-    public final EnumMap<Direction, String> paths = new EnumMap<>(Direction.class);
+    public EnumMap<Direction, String> paths = new EnumMap<>(Direction.class);
     @JsonIgnore
     private String id;
     @JsonProperty("name")
     public String name;
+    // Decodes the description on first use, for rooms loaded from a world image
+    @JsonIgnore
+    private Supplier<String> description_source;
+    // The game that may modify this room in place, see `GameState.roomForUpdate`
+    @JsonIgnore
+    Object owner;
 
     public void onEnter(GameState context) {
         context.player.setCurrentRoomId(this.id);
     }
 
+    /// The id of the room's type, or null for a plain room
+    @JsonProperty("type")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    String type() {
+        return ObjectTypes.INSTANCE.idOf(this);
+    }
+
     public void setId(String id) {
         this.id = id;
     }
@@ -32,19 +54,69 @@ public class Room {
     }
 
     public void addItem(String itemName) {
-        items.add(itemName);
+        items = items.with(itemName);
     }
 
     public boolean takeItem(String itemName) {
-        return items.remove(itemName);
+        var remaining = items.without(itemName);
+        if (remaining == items) {
+            return false;
+        }
+        items = remaining;
+        return true;
     }
 
+    /// The description as the room presents it, which rooms with custom behavior may vary with their state
+    @JsonIgnore
     public String getDescription() {
-        return description;
+        return savedDescription();
+    }
+
+    // Saved instead of `getDescription`, which would store the variation of the moment as the description for good
+    @JsonProperty("description")
+    private String savedDescription() {
+        // Not cached in the room, as shared rooms are read from several threads. The image only decodes it once.
+        return description_source != null ? description_source.get() : description;
+    }
+
+    /// Sets a description that is only decoded once it is first needed.
+    void describeLazily(Supplier<String> source) {
+        description = null;
+        description_source = source;
+    }
+
+    /// Returns a plain room with only this room's id, name and exits, which is what the map shows of a room that isn't
+    /// loaded.
+    Room stub() {
+        var stub = new Room();
+        stub.id = id;
+        stub.name = name;
+        stub.paths = paths;
+        return stub;
+    }
+
+    /// Copies the room, including the state of rooms with custom behavior. The copy shares everything with the room
+    /// until either of them is modified.
+    Room copy() {
+        try {
+            return (Room) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
     }
 
     public void setExit(Direction direction, String neighbor) {
-        paths.put(direction, neighbor);
+        var new_paths = new EnumMap<>(paths);
+        new_paths.put(direction, neighbor);
+        paths = new_paths;
+    }
+
+    public void removeExit(Direction direction) {
+        if (paths.containsKey(direction)) {
+            var new_paths = new EnumMap<>(paths);
+            new_paths.remove(direction);
+            paths = new_paths;
+        }
     }
 
     public String getExitName(Direction direction) {
@@ -54,7 +126,7 @@ public class Room {
     public String getItemString(GameState context) {
         StringBuilder sb = new StringBuilder();
         for (String item : items) {
-            sb.append(context.loaded_items.get(item).getName()).append(" ");
+            sb.append(context.item(item).getName()).append(" ");
         }
         return sb.toString().trim();
     }
@@ -0,0 +1,205 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchService;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/// An in-memory index of the saves, so listing saves and completing save names doesn't list the save directory.
+///
+/// The directory is read once, only the header of every save is read. From then on the catalog is told about the saves
+/// this process makes and deletes, and watches the directory for changes made by anything else. Where the directory
+/// can't be watched, it is read again every time the saves are listed.
+final class SaveCatalog {
+    static final SaveCatalog INSTANCE = new SaveCatalog();
+
+    // Sorted by name, so completing a save name only visits the names starting with the typed text
+    private final ConcurrentSkipListMap<String, SaveSummary> saves = new ConcurrentSkipListMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile boolean watching = false;
+    // Set once the directory couldn't be watched, so it isn't tried again every time the saves are listed
+    private volatile boolean unwatchable = false;
+    // Set while the directory can't be listed, so the failure is only reported once
+    private volatile boolean listing_failed = false;
+
+    private SaveCatalog() {
+    }
+
+    /// Returns every save, most recently saved first.
+    List<SaveSummary> list() {
+        ensureLoaded();
+        return saves.values().stream()
+                .sorted(Comparator.comparing(SaveSummary::saved_at).reversed())
+                .toList();
+    }
+
+    List<String> names() {
+        ensureLoaded();
+        return List.copyOf(saves.keySet());
+    }
+
+    List<String> namesStartingWith(String prefix) {
+        ensureLoaded();
+        var names = new ArrayList<String>();
+        for (var name : saves.tailMap(prefix).keySet()) {
+            if (!name.startsWith(prefix)) {
+                break;
+            }
+            names.add(name);
+        }
+        return names;
+    }
+
+    /// Records a save made by this process, before it has been written.
+    void saved(SaveSummary summary) {
+        saves.put(summary.name(), summary);
+    }
+
+    /// Records the size of a save that was just written, keeping progress journaled since.
+    void written(SaveSummary summary) {
+        saves.computeIfPresent(summary.name(), (_, known) -> merge(known, summary));
+    }
+
+    /// Records the progress a journaled command made, before its save header is rewritten with it.
+    void progressed(String name, Instant saved_at, String room) {
+        saves.computeIfPresent(name, (_, summary) -> summary.withProgress(saved_at, room));
+    }
+
+    void removed(String name) {
+        saves.remove(name);
+    }
+
+    private void ensureLoaded() {
+        if (watching) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (watching) {
+                return;
+            }
+            // Started first, so nothing that changes while the directory is read is missed
+            if (!unwatchable) {
+                startWatching();
+            }
+            rescan();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void startWatching() {
+        try {
+            var directory = SaveManager.getSaveDirectory();
+            Files.createDirectories(directory);
+            var watcher = directory.getFileSystem().newWatchService();
+            directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            Thread.ofPlatform().name("Zork-SaveCatalog").daemon().start(() -> watchLoop(watcher));
+            watching = true;
+        } catch (IOException | UnsupportedOperationException e) {
+            unwatchable = true;
+            System.err.println("Can't watch the save directory, saves will be listed from disk: " + e);
+        }
+    }
+
+    private void watchLoop(WatchService watcher) {
+        while (true) {
+            try {
+                var key = watcher.take();
+                for (var event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        rescan();
+                        continue;
+                    }
+                    var file_name = event.context().toString();
+                    SaveFormat.fromFileName(file_name)
+                            .ifPresent(format -> refresh(file_name.substring(0, file_name.length() - format.extension.length())));
+                }
+                if (!key.reset()) {
+                    // The directory itself is gone, it is read and watched again once the saves are next listed
+                    watching = false;
+                    watcher.close();
+                    return;
+                }
+            } catch (InterruptedException | ClosedWatchServiceException | IOException e) {
+                watching = false;
+                return;
+            }
+        }
+    }
+
+    private void rescan() {
+        var found = new HashSet<String>();
+        try (var files = Files.newDirectoryStream(SaveManager.getSaveDirectory())) {
+            for (var path : files) {
+                var file_name = path.getFileName().toString();
+                SaveFormat.fromFileName(file_name)
+                        .ifPresent(format -> found.add(file_name.substring(0, file_name.length() - format.extension.length())));
+            }
+        } catch (IOException e) {
+            if (!listing_failed) {
+                listing_failed = true;
+                System.err.println("Failed to list the save directory: " + e);
+            }
+            return;
+        }
+        listing_failed = false;
+        for (var name : found) {
+            refresh(name);
+        }
+        var unwritten = SaveWriter.INSTANCE.unwrittenNames();
+        saves.keySet().removeIf(name -> !found.contains(name) && !unwritten.contains(name));
+    }
+
+    // Reads the save's header again after its file changed
+    private void refresh(String name) {
+        // The catalog already holds a save that is about to replace the file
+        if (SaveWriter.INSTANCE.unwritten(name).isPresent()) {
+            return;
+        }
+        var on_disk = readSummary(name);
+        if (on_disk.isEmpty()) {
+            saves.remove(name);
+            return;
+        }
+        saves.merge(name, on_disk.get(), SaveCatalog::merge);
+    }
+
+    // Keeps progress journaled since the snapshot was taken
+    private static SaveSummary merge(SaveSummary known, SaveSummary written) {
+        return known.saved_at().isAfter(written.saved_at())
+                ? new SaveSummary(known.name(), known.saved_at(), known.room(), written.size())
+                : written;
+    }
+
+    private static Optional<SaveSummary> readSummary(String name) {
+        var saves_path = SaveManager.getSaveDirectory();
+        for (var format : SaveFormat.values()) {
+            var path = saves_path.resolve(name + format.extension);
+            try {
+                var header = SaveHeader.read(path);
+                if (header.isPresent()) {
+                    return Optional.of(SaveSummary.of(name, header.get()));
+                }
+                // Written before saves had headers
+                return Optional.of(new SaveSummary(name, Files.getLastModifiedTime(path).toInstant(), "", Files.size(path)));
+            } catch (NoSuchFileException e) {
+                continue;
+            } catch (IOException e) {
+                System.err.println("Failed to read the header of save \"" + name + "\": " + e);
+                return Optional.empty();
+            }
+        }
+        return Optional.empty();
+    }
+}
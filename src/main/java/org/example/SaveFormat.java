@@ -0,0 +1,87 @@
+package org.example;
+
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectReader;
+import tools.jackson.databind.ObjectWriter;
+import tools.jackson.dataformat.cbor.CBORFactory;
+import tools.jackson.dataformat.cbor.CBORMapper;
+import tools.jackson.dataformat.cbor.CBORWriteFeature;
+
+import java.util.Optional;
+
+/// The encodings a game can be saved in. Every format shares one preconfigured reader and writer, so Jackson only
+/// introspects `GameState` once per format.
+///
+/// Binary saves start with the CBOR self-describe tag, which no JSON document can start with, so the format of a save
+/// is detected from its first bytes rather than trusted from its file name.
+public enum SaveFormat {
+    JSON(".json", new ObjectMapper()),
+    // String references(STRINGREF) would shrink saves further, but aren't decoded correctly inside arrays by the
+    // current CBOR module
+    CBOR(".cbor", CBORMapper.builder(CBORFactory.builder()
+                    // The header is only written when enabled on the factory itself
+                    .enable(CBORWriteFeature.WRITE_TYPE_HEADER)
+                    .build())
+            .build());
+
+    // The CBOR self-describe tag(55799) written by WRITE_TYPE_HEADER
+    private static final byte[] CBOR_MAGIC = {(byte) 0xD9, (byte) 0xD9, (byte) 0xF7};
+
+    public final String extension;
+    private final ObjectReader reader;
+    private final ObjectWriter writer;
+
+    SaveFormat(String extension, ObjectMapper mapper) {
+        this.extension = extension;
+        this.reader = mapper.readerFor(GameState.class);
+        this.writer = mapper.writerFor(GameState.class);
+    }
+
+    public byte[] encode(GameState game) throws JacksonException {
+        return writer.writeValueAsBytes(game);
+    }
+
+    /// Decodes a game without running its update hooks.
+    public GameState decode(byte[] data) throws JacksonException {
+        return reader.readValue(data);
+    }
+
+    /// Decodes a game that starts at the offset, such as after a save's header.
+    public GameState decode(byte[] data, int offset) throws JacksonException {
+        return reader.readValue(data, offset, data.length - offset);
+    }
+
+    /// Detects the format of an encoded game from its first bytes.
+    public static SaveFormat detect(byte[] data) {
+        return detect(data, 0);
+    }
+
+    public static SaveFormat detect(byte[] data, int offset) {
+        if (data.length - offset >= CBOR_MAGIC.length
+                && data[offset] == CBOR_MAGIC[0] && data[offset + 1] == CBOR_MAGIC[1] && data[offset + 2] == CBOR_MAGIC[2]) {
+            return CBOR;
+        }
+        return JSON;
+    }
+
+    /// Finds a format by name, ignoring case.
+    public static Optional<SaveFormat> fromName(String name) {
+        for (var format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return Optional.of(format);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /// Finds the format a file name's extension belongs to.
+    public static Optional<SaveFormat> fromFileName(String file_name) {
+        for (var format : values()) {
+            if (file_name.endsWith(format.extension)) {
+                return Optional.of(format);
+            }
+        }
+        return Optional.empty();
+    }
+}
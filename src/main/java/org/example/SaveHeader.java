@@ -0,0 +1,110 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Optional;
+
+/// The fixed-size header every save file starts with, so saves can be listed with their details by reading only the
+/// start of each file.
+///
+/// The header is a single line of text padded to `SIZE` bytes: `ZORKSAVE <version> <saved at, in epoch milliseconds>
+/// <size of the encoded game> <name of the current room>`. The encoded game follows it. Saves written before headers
+/// existed start with the encoded game right away, and are told apart by the missing magic.
+record SaveHeader(Instant saved_at, String room, long size) {
+    static final int SIZE = 128;
+    private static final String MAGIC = "ZORKSAVE";
+    private static final int VERSION = 1;
+
+    static SaveHeader of(GameState game, long size) {
+        return new SaveHeader(Instant.now(), roomName(game), size);
+    }
+
+    static String roomName(GameState game) {
+        var room = game.getCurrentRoom();
+        return room == null || room.name == null ? "" : room.name;
+    }
+
+    byte[] encode() {
+        var prefix = MAGIC + " " + VERSION + " " + saved_at.toEpochMilli() + " " + size + " ";
+        var line = new byte[SIZE];
+        Arrays.fill(line, (byte) ' ');
+        var written = putAscii(line, 0, prefix);
+        // The room name is cut short rather than growing the header, at a character boundary
+        var room_bytes = room.replace('\n', ' ').getBytes(StandardCharsets.UTF_8);
+        var room_length = Math.min(room_bytes.length, SIZE - 1 - written);
+        while (room_length > 0 && room_length < room_bytes.length && (room_bytes[room_length] & 0xC0) == 0x80) {
+            room_length--;
+        }
+        System.arraycopy(room_bytes, 0, line, written, room_length);
+        line[SIZE - 1] = '\n';
+        return line;
+    }
+
+    /// Reads the header at the start of an encoded save, if it has one.
+    static Optional<SaveHeader> decode(byte[] data) {
+        if (data.length < SIZE || data[SIZE - 1] != '\n') {
+            return Optional.empty();
+        }
+        var line = new String(data, 0, SIZE - 1, StandardCharsets.UTF_8);
+        var parts = line.split(" ", 5);
+        if (parts.length < 5 || !parts[0].equals(MAGIC)) {
+            return Optional.empty();
+        }
+        try {
+            if (Integer.parseInt(parts[1]) != VERSION) {
+                return Optional.empty();
+            }
+            return Optional.of(new SaveHeader(Instant.ofEpochMilli(Long.parseLong(parts[2])), parts[4].stripTrailing(), Long.parseLong(parts[3])));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    /// Reads only the header of a save file.
+    static Optional<SaveHeader> read(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            var buffer = ByteBuffer.allocate(SIZE);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            }
+            return decode(buffer.array());
+        }
+    }
+
+    /// Replaces the time and room in the header of a save file in place, such as after a journaled command, keeping the
+    /// size of the encoded game. Returns false if the save has no header to update. The header is a single short write at
+    /// the start of the file, so it is never left half updated.
+    static boolean rewrite(Path path, Instant saved_at, String room) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            var buffer = ByteBuffer.allocate(SIZE);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            }
+            var header = decode(buffer.array());
+            if (header.isEmpty()) {
+                return false;
+            }
+            var updated = ByteBuffer.wrap(new SaveHeader(saved_at, room, header.get().size()).encode());
+            while (updated.hasRemaining()) {
+                channel.write(updated, updated.position());
+            }
+            return true;
+        }
+    }
+
+    /// The offset of the encoded game within a save file's contents.
+    static int payloadOffset(byte[] data) {
+        return decode(data).isPresent() ? SIZE : 0;
+    }
+
+    private static int putAscii(byte[] line, int offset, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            line[offset + i] = (byte) text.charAt(i);
+        }
+        return offset + text.length();
+    }
+}
@@ -0,0 +1,191 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/// An append-only log of the commands run since a save's snapshot, so autosaving a turn costs one short line instead of
+/// encoding the whole game.
+///
+/// A journal is a text file next to the save. Its first line names the game it belongs to, every following line holds
+/// the sequence number of a command and the command's text. Loading a save replays the commands after the snapshot's
+/// sequence number, and only if the snapshot is of the same game. Once a journal grows long, the game is saved again, and
+/// the commands that save covers are dropped once it has been written.
+///
+/// `undo` and `redo` are journaled as a rewind to the sequence number of the version of the game they went back to,
+/// which replaying puts back instead of running a command.
+final class SaveJournal {
+    static final SaveJournal INSTANCE = new SaveJournal();
+    static final String EXTENSION = ".journal";
+    /// How many commands a journal may hold before the game is saved again
+    static final int COMPACT_AFTER = 64;
+    private static final String HEADER_PREFIX = "zork-journal ";
+    // Not a command the player can enter, so it is never mistaken for one
+    private static final String REWIND_PREFIX = "!rewind ";
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // What is known to be in each journal file, by slot name, so appending doesn't have to read the file
+    private final HashMap<String, JournalFile> files = new HashMap<>();
+
+    private SaveJournal() {
+    }
+
+    static String newJournalId() {
+        return UUID.randomUUID().toString();
+    }
+
+    /// The journaled text of a rewind to the version of the game after the command with the sequence number.
+    static String rewindTo(long sequence) {
+        return REWIND_PREFIX + sequence;
+    }
+
+    /// Returns the sequence number a journaled rewind goes back to, or -1 if the entry is a command.
+    static long rewindTarget(Entry entry) {
+        if (!entry.command().startsWith(REWIND_PREFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(entry.command(), REWIND_PREFIX.length(), entry.command().length(), 10);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    static Path pathFor(String name) {
+        return SaveManager.getSaveDirectory().resolve(name + EXTENSION);
+    }
+
+    /// Appends a command to the slot's journal, starting a new journal if the current one belongs to another game.
+    /// Returns the number of commands in the journal.
+    int append(String name, String journal_id, long sequence, String command) throws IOException {
+        lock.lock();
+        try {
+            var path = pathFor(name);
+            var file = files.get(name);
+            if (file == null) {
+                file = JournalFile.read(path);
+                files.put(name, file);
+            }
+            if (!journal_id.equals(file.journal_id)) {
+                Files.createDirectories(path.getParent());
+                Files.writeString(path, HEADER_PREFIX + journal_id + "\n", StandardCharsets.UTF_8);
+                file = new JournalFile(journal_id, new ArrayList<>());
+                files.put(name, file);
+            }
+            var line = sequence + " " + command + "\n";
+            try (var channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                var buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            file.entries.add(new Entry(sequence, command));
+            return file.entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// Returns the commands of the game's journal that come after the sequence number, oldest first.
+    List<Entry> entriesAfter(String name, String journal_id, long sequence) throws IOException {
+        lock.lock();
+        try {
+            var file = JournalFile.read(pathFor(name));
+            files.put(name, file);
+            if (!journal_id.equals(file.journal_id)) {
+                return List.of();
+            }
+            return file.entries.stream().filter(entry -> entry.sequence() > sequence).toList();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// Drops the commands a snapshot that was just written covers. A snapshot written by a game that saved into another
+    /// slot makes the slot's journal meaningless, so it is dropped entirely.
+    void snapshotWritten(String name, String journal_id, long sequence, boolean own_slot) {
+        lock.lock();
+        try {
+            var path = pathFor(name);
+            if (!own_slot) {
+                Files.deleteIfExists(path);
+                files.remove(name);
+                return;
+            }
+            var file = JournalFile.read(path);
+            // A journal of another game is replaced by that game's first command, and ignored until then
+            if (file.journal_id == null || !file.journal_id.equals(journal_id)) {
+                files.put(name, file);
+                return;
+            }
+            var remaining = new ArrayList<Entry>();
+            var contents = new StringBuilder(HEADER_PREFIX).append(journal_id).append('\n');
+            for (var entry : file.entries) {
+                if (entry.sequence() > sequence) {
+                    remaining.add(entry);
+                    contents.append(entry.sequence()).append(' ').append(entry.command()).append('\n');
+                }
+            }
+            SaveWriter.writeAtomically(path, contents.toString().getBytes(StandardCharsets.UTF_8));
+            files.put(name, new JournalFile(journal_id, remaining));
+        } catch (IOException e) {
+            System.err.println("Failed to compact the journal of save \"" + name + "\": " + e);
+            files.remove(name);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void delete(String name) throws IOException {
+        lock.lock();
+        try {
+            Files.deleteIfExists(pathFor(name));
+            files.remove(name);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    record Entry(long sequence, String command) {
+    }
+
+    private record JournalFile(String journal_id, ArrayList<Entry> entries) {
+        // Reads a journal, stopping at the first line that is incomplete, as a crash may have cut off the last append
+        static JournalFile read(Path path) throws IOException {
+            String contents;
+            try {
+                contents = Files.readString(path, StandardCharsets.UTF_8);
+            } catch (NoSuchFileException e) {
+                return new JournalFile(null, new ArrayList<>());
+            }
+            var entries = new ArrayList<Entry>();
+            var header_end = contents.indexOf('\n');
+            if (header_end < 0 || !contents.startsWith(HEADER_PREFIX)) {
+                return new JournalFile(null, entries);
+            }
+            var journal_id = contents.substring(HEADER_PREFIX.length(), header_end);
+            for (int start = header_end + 1, end = contents.indexOf('\n', start); end >= 0; start = end + 1, end = contents.indexOf('\n', start)) {
+                var separator = contents.indexOf(' ', start);
+                if (separator < 0 || separator > end) {
+                    break;
+                }
+                try {
+                    entries.add(new Entry(Long.parseLong(contents, start, separator, 10), contents.substring(separator + 1, end)));
+                } catch (NumberFormatException e) {
+                    break;
+                }
+            }
+            return new JournalFile(journal_id, entries);
+        }
+    }
+}
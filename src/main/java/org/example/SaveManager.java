@@ -2,17 +2,29 @@ package org.example;
 
 import dev.dirs.ProjectDirectories;
 import tools.jackson.core.JacksonException;
-import tools.jackson.databind.ObjectMapper;
+import tools.jackson.core.exc.JacksonIOException;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Arrays;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class SaveManager {
+    /// Set `-Dzork.saveFormat=cbor` to write saves in the compact binary format. Saves in either format can be loaded.
+    static final SaveFormat SAVE_FORMAT = SaveFormat.fromName(System.getProperty("zork.saveFormat", "json")).orElseGet(() -> {
+        System.err.println("Unknown save format \"" + System.getProperty("zork.saveFormat") + "\", saving as JSON.");
+        return SaveFormat.JSON;
+    });
+    /// Set `-Dzork.autosave=false` to only save when asked to. Otherwise every command that changes the game is appended
+    /// to the save's journal as it runs.
+    static final boolean AUTOSAVE = Boolean.parseBoolean(System.getProperty("zork.autosave", "true"));
+
     public static Path getSaveDirectory() {
         var directories = ProjectDirectories.from("org", "example", "Zork");
         var user_data_directory = directories.dataDir;
@@ -25,32 +37,166 @@ public class SaveManager {
         return Optional.ofNullable(save_files);
     }
 
+    /// Lists the names of all saves, including saves that are still being written, from the save catalog.
     public static List<String> listSaveNames() {
-        var save_files = SaveManager.listSaveFiles().orElse(new File[]{});
-        return Arrays.stream(save_files).map(file -> RegexCommandHelper.trimJsonExtension(file.getName())).toList();
+        return SaveCatalog.INSTANCE.names();
+    }
+
+    public static List<String> listSaveNamesStartingWith(String prefix) {
+        return SaveCatalog.INSTANCE.namesStartingWith(prefix);
     }
 
+    /// Lists all saves with their details, most recently saved first.
+    public static List<SaveSummary> listSaves() {
+        return SaveCatalog.INSTANCE.list();
+    }
+
+    /// Returns the path of the existing save with the given name, in whichever format it was written, or the path a new
+    /// save would be written to.
     public static Path pathForSaveName(String name) {
         var saves_path = getSaveDirectory();
-        return Path.of(saves_path.toString(), name + ".json");
+        for (var format : SaveFormat.values()) {
+            var path = Path.of(saves_path.toString(), name + format.extension);
+            if (Files.exists(path)) {
+                return path;
+            }
+        }
+        return Path.of(saves_path.toString(), name + SAVE_FORMAT.extension);
+    }
+
+    // The session playing in each save slot. Every session of the server shares the saves, and two games playing in one
+    // slot would write over each other's snapshots and journal.
+    private static final ConcurrentHashMap<String, Object> open_slots = new ConcurrentHashMap<>();
+
+    /// Claims the save slot for a session's game, returning false if another session is playing in it.
+    static boolean openSlot(String name, Object session) {
+        var holder = open_slots.putIfAbsent(name, session);
+        return holder == null || holder == session;
+    }
+
+    /// Releases a save slot the session no longer plays in.
+    static void closeSlot(String name, Object session) {
+        open_slots.remove(name, session);
+    }
+
+    /// Returns true if a session other than the given one is playing in the save slot.
+    static boolean isOpenElsewhere(String name, Object session) {
+        var holder = open_slots.get(name);
+        return holder != null && holder != session;
+    }
+
+    /// Deletes the save with the given name in every format along with its journal, including a save that is still
+    /// waiting to be written.
+    public static void deleteSave(String name) {
+        try {
+            SaveWriter.INSTANCE.discard(name);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        var saves_path = getSaveDirectory();
+        for (var format : SaveFormat.values()) {
+            var _ = Path.of(saves_path.toString(), name + format.extension).toFile().delete();
+        }
+        SaveCatalog.INSTANCE.removed(name);
+        try {
+            SaveJournal.INSTANCE.delete(name);
+        } catch (IOException e) {
+            System.err.println("Failed to delete the journal of save \"" + name + "\": " + e);
+        }
     }
 
+    /// Loads the latest snapshot of the save, and replays the commands journaled since onto it.
     public static GameState loadState(String name) throws JacksonException {
-        var save_file_path = pathForSaveName(name);
-        var game = new ObjectMapper().readValue(save_file_path, GameState.class);
+        GameState game;
+        SaveFormat format;
+        var unwritten = SaveWriter.INSTANCE.unwritten(name);
+        if (unwritten.isPresent()) {
+            // The file on disk may still hold an older save
+            format = unwritten.get().format();
+            game = unwritten.get().snapshot().copy();
+        } else {
+            byte[] data;
+            try {
+                data = Files.readAllBytes(pathForSaveName(name));
+            } catch (IOException e) {
+                throw JacksonIOException.construct(e);
+            }
+            var offset = SaveHeader.payloadOffset(data);
+            format = SaveFormat.detect(data, offset);
+            game = format.decode(data, offset);
+            game.roomUpdateHook();
+            game.itemUpdateHook();
+        }
         game.save_name = name;
-        game.roomUpdateHook();
-        game.itemUpdateHook();
+        game.saved_sequence = game.journal_sequence;
+        if (game.journal_id == null) {
+            // Saved before journaling existed, so nothing can have been journaled onto it yet. It is snapshotted again
+            // right away, so the commands journaled from now on have a snapshot of the same game to be replayed onto.
+            game.journal_id = SaveJournal.newJournalId();
+            if (AUTOSAVE) {
+                saveState(name, game, format);
+            }
+            return game;
+        }
+        try {
+            ZorkInstance.replay(game, SaveJournal.INSTANCE.entriesAfter(name, game.journal_id, game.journal_sequence));
+        } catch (IOException e) {
+            System.err.println("Failed to read the journal of save \"" + name + "\", loading its last snapshot: " + e);
+        }
         return game;
     }
 
+    // The initial world is loaded once, and every game created in this JVM starts as a copy of it
+    private static volatile Optional<GameState> initial_state = null;
+
+    private static byte[] readInitialStateJson() throws IOException {
+        try (var state_stream = Objects.requireNonNull(GameState.class.getClassLoader().getResource("initial_state.json")).openStream()) {
+            return state_stream.readAllBytes();
+        }
+    }
+
+    /// Creates a new game as a copy of the initial world, which is loaded on first use from the precompiled world image,
+    /// or from `initial_state.json` if there is no image.
     public static Optional<GameState> loadInitialState(String save_name) {
+        return initialState().map(template -> {
+            var game = template.copy();
+            game.save_name = save_name;
+            game.journal_id = SaveJournal.newJournalId();
+            return game;
+        });
+    }
+
+    // Loading the world twice in a race is harmless
+    private static Optional<GameState> initialState() {
+        var cached = initial_state;
+        if (cached == null) {
+            cached = loadWorld();
+            cached.ifPresent(GameState::freeze);
+            initial_state = cached;
+        }
+        return cached;
+    }
+
+    private static Optional<GameState> loadWorld() {
+        if (WorldRegions.WORLD != null) {
+            try {
+                return Optional.of(WorldRegions.open(Path.of(WorldRegions.WORLD)).newGame());
+            } catch (IOException | JacksonException e) {
+                System.err.println("Failed to open the world " + WorldRegions.WORLD + ", playing the bundled world: " + e);
+            }
+        }
+        var image = WorldImage.bundled();
+        if (image.isPresent()) {
+            try {
+                return Optional.of(image.get().newGame());
+            } catch (JacksonException | IndexOutOfBoundsException e) {
+                System.err.println("The world image is corrupt, creating the game from JSON: " + e);
+            }
+        }
         Optional<GameState> game = Optional.empty();
         try {
-            var state_stream = Objects.requireNonNull(GameState.class.getClassLoader().getResource("initial_state.json")).openStream();
-
-            game = Optional.of(new ObjectMapper().readValue(state_stream, GameState.class));
-            state_stream.close();
+            game = Optional.of(SaveFormat.JSON.decode(readInitialStateJson()));
         } catch (NullPointerException p) {
             System.err.println("Unrecoverable error: Internal JSON file `initial_state.json` missing.");
         } catch (IOException e) {
@@ -60,7 +206,6 @@ public class SaveManager {
         game.map(zork -> {
             zork.roomUpdateHook();
             zork.itemUpdateHook();
-            zork.save_name = save_name;
             return zork;
         });
 
@@ -68,10 +213,70 @@ public class SaveManager {
     }
 
 
-    public static void saveState(String name, GameState game) throws JacksonException {
-        var saves_path = getSaveDirectory();
-        saves_path.toFile().mkdirs();
-        var save_file_path = pathForSaveName(name);
-        new ObjectMapper().writeValue(save_file_path, game);
+    public static void saveState(String name, GameState game) {
+        saveState(name, game, SAVE_FORMAT);
+    }
+
+    /// Saves the game in the given format, replacing a save with the same name in any format. Only a snapshot of the game
+    /// is taken on the calling thread, it is encoded and written to disk in the background.
+    public static void saveState(String name, GameState game, SaveFormat format) {
+        var snapshot = game.snapshot();
+        var own_slot = name.equals(game.save_name);
+        if (own_slot) {
+            game.saved_sequence = snapshot.journal_sequence;
+        }
+        // The size is only known once the snapshot is encoded
+        var header = SaveHeader.of(snapshot, 0);
+        SaveCatalog.INSTANCE.saved(SaveSummary.of(name, header));
+        SaveWriter.INSTANCE.submit(name, format, header, snapshot,
+                () -> SaveJournal.INSTANCE.snapshotWritten(name, snapshot.journal_id, snapshot.journal_sequence, own_slot));
+    }
+
+    /// Autosaves a command that just ran by appending it to the game's journal. Every so often the game is saved again,
+    /// which drops the journaled commands once it has been written.
+    public static void recordCommand(GameState game, String command) {
+        game.journal_sequence++;
+        // A game that wasn't loaded through here has no save to journal into
+        if (!AUTOSAVE || game.save_name == null || game.journal_id == null) {
+            return;
+        }
+        try {
+            var journaled = SaveJournal.INSTANCE.append(game.save_name, game.journal_id, game.journal_sequence, command);
+            var now = Instant.now();
+            var room = SaveHeader.roomName(game);
+            SaveCatalog.INSTANCE.progressed(game.save_name, now, room);
+            SaveWriter.INSTANCE.progressed(game.save_name, now, room);
+            // Unless a save of the slot is already on its way, which will drop most of them
+            if (journaled >= SaveJournal.COMPACT_AFTER && SaveWriter.INSTANCE.unwritten(game.save_name).isEmpty()) {
+                saveState(game.save_name, game);
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to autosave \"" + command + "\": " + e);
+        }
+    }
+
+    /// Autosaves a game that went back to an earlier version of itself, such as through `undo`, given the journal and
+    /// sequence number the game had before. Versions the journal can be replayed to are journaled as a rewind to their
+    /// sequence number, older ones start a new journal and save the game right away, so it has a snapshot to be replayed
+    /// onto. Either way the game's sequence number moves on, so no number stands for two versions of the game.
+    public static void rewound(GameState game, String journal_id, long sequence) {
+        var version = game.journal_sequence;
+        var replayable = Objects.equals(journal_id, game.journal_id) && version >= game.saved_sequence;
+        game.journal_id = journal_id;
+        game.journal_sequence = sequence;
+        if (replayable) {
+            recordCommand(game, SaveJournal.rewindTo(version));
+            return;
+        }
+        game.journal_id = SaveJournal.newJournalId();
+        game.journal_sequence++;
+        if (AUTOSAVE && game.save_name != null) {
+            saveState(game.save_name, game);
+        }
+    }
+
+    /// Waits until every save made so far has been written to disk. Returns false if that took longer than the timeout.
+    public static boolean flushSaves(Duration timeout) throws InterruptedException {
+        return SaveWriter.INSTANCE.flush(timeout);
     }
 }
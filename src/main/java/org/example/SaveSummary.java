@@ -0,0 +1,45 @@
+package org.example;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Optional;
+
+/// What the save catalog knows about a save without loading it. Saves written before save headers existed have no room.
+public record SaveSummary(String name, Instant saved_at, String room, long size) {
+    private static final DateTimeFormatter SAVED_AT_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneId.systemDefault());
+
+    static SaveSummary of(String name, SaveHeader header) {
+        return new SaveSummary(name, header.saved_at(), header.room(), header.size());
+    }
+
+    /// Finds the save the player picked from a list of the saves' labels, or whose name they entered.
+    /// Intentionally compares pointers to the labels, so entered text that happens to equal a label isn't taken for
+    /// picking it, while entered text is matched against the names of the saves.
+    static Optional<SaveSummary> picked(List<SaveSummary> saves, List<String> labels, String selected) {
+        for (int i = 0; i < labels.size(); i++) {
+            if (labels.get(i) == selected) {
+                return Optional.of(saves.get(i));
+            }
+        }
+        var name = selected.strip();
+        for (var save : saves) {
+            if (save.name().equals(name)) {
+                return Optional.of(save);
+            }
+        }
+        return Optional.empty();
+    }
+
+    SaveSummary withProgress(Instant saved_at, String room) {
+        return new SaveSummary(name, saved_at, room, size);
+    }
+
+    /// Describes the save the way save prompts list it.
+    @Override
+    public String toString() {
+        var when = SAVED_AT_FORMAT.format(saved_at);
+        return room.isEmpty() ? name + " (" + when + ")" : name + " (" + room + ", " + when + ")";
+    }
+}
@@ -0,0 +1,249 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/// Encodes and writes saves to disk on a background thread, so saving only costs the game thread a snapshot of the game.
+///
+/// Every save is written to a temporary file, flushed to disk and then atomically renamed over the previous save, so a
+/// crash leaves either the old or the new save behind, never a partial one. A save that is still waiting to be written
+/// is replaced by a newer save of the same slot, so only the latest one is written.
+final class SaveWriter {
+    static final SaveWriter INSTANCE = new SaveWriter();
+    static final String TEMP_SUFFIX = ".tmp";
+    // How long exiting the JVM waits for outstanding saves
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(10);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition saveSubmitted = lock.newCondition();
+    private final Condition saveWritten = lock.newCondition();
+    // Saves waiting to be written by slot name, oldest first
+    private final LinkedHashMap<String, PendingSave> pending = new LinkedHashMap<>();
+    // The save currently being written, if any
+    private String writing_name = null;
+    private PendingSave writing = null;
+    // The latest progress journaled into each slot, which the slot's next save is written with if it is newer
+    private final HashMap<String, Progress> progress = new HashMap<>();
+
+    private SaveWriter() {
+        Thread.ofPlatform().name("Zork-SaveWriter").daemon().start(this::writeLoop);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                if (!flush(SHUTDOWN_TIMEOUT)) {
+                    System.err.println("Gave up waiting for saves to be written.");
+                }
+            } catch (InterruptedException ignored) {
+            }
+        }, "Zork-SaveWriter-Shutdown"));
+    }
+
+    /// Queues a snapshot of a game to be saved, replacing a queued save of the same slot that hasn't been written yet.
+    /// The header's size is filled in once the snapshot is encoded. The callback runs on the writer thread once the save
+    /// is on disk, it is dropped along with a save that was replaced.
+    void submit(String name, SaveFormat format, SaveHeader header, GameState snapshot, Runnable on_written) {
+        lock.lock();
+        try {
+            // Re-inserted so the slot is written after the saves that were queued before it
+            pending.remove(name);
+            pending.put(name, new PendingSave(format, header, snapshot, on_written));
+            saveSubmitted.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// Returns the latest save of the slot that may not be on disk yet.
+    Optional<PendingSave> unwritten(String name) {
+        lock.lock();
+        try {
+            var queued = pending.get(name);
+            if (queued == null && name.equals(writing_name)) {
+                queued = writing;
+            }
+            return Optional.ofNullable(queued);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// Returns the slots with saves that may not be on disk yet.
+    Set<String> unwrittenNames() {
+        lock.lock();
+        try {
+            var names = new HashSet<>(pending.keySet());
+            if (writing_name != null) {
+                names.add(writing_name);
+            }
+            return names;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// Records the progress a journaled command made in the slot's save header, so the save is listed with its current
+    /// room and time by this and every other process. A save of the slot that is waiting to be written gets the progress
+    /// once it is written, otherwise the header on disk is rewritten in place.
+    void progressed(String name, Instant saved_at, String room) {
+        lock.lock();
+        try {
+            progress.put(name, new Progress(saved_at, room));
+            if (!pending.containsKey(name) && !name.equals(writing_name)) {
+                rewriteHeader(name, SaveManager.pathForSaveName(name));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Must be called with the lock held, so the header isn't rewritten while the save is replaced
+    private void rewriteHeader(String name, Path path) {
+        var latest = progress.get(name);
+        if (latest == null) {
+            return;
+        }
+        try {
+            SaveHeader.rewrite(path, latest.saved_at(), latest.room());
+        } catch (NoSuchFileException e) {
+            // Not saved yet
+        } catch (IOException e) {
+            System.err.println("Failed to update the header of save \"" + name + "\": " + e);
+        }
+    }
+
+    /// Drops a queued save of the slot and waits for it to stop being written, so its files can be deleted.
+    void discard(String name) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            pending.remove(name);
+            progress.remove(name);
+            while (name.equals(writing_name)) {
+                saveWritten.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// Waits until every save submitted so far has been written. Returns false if that took longer than the timeout.
+    boolean flush(Duration timeout) throws InterruptedException {
+        long remaining = timeout.toNanos();
+        lock.lockInterruptibly();
+        try {
+            while (!pending.isEmpty() || writing != null) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = saveWritten.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            String name;
+            PendingSave save;
+            lock.lock();
+            try {
+                while (pending.isEmpty()) {
+                    saveSubmitted.awaitUninterruptibly();
+                }
+                var oldest = pending.pollFirstEntry();
+                name = oldest.getKey();
+                save = oldest.getValue();
+                writing_name = name;
+                writing = save;
+            } finally {
+                lock.unlock();
+            }
+
+            Path written = null;
+            try {
+                written = write(name, save);
+                save.on_written().run();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Failed to write save \"" + name + "\": " + e);
+            }
+
+            lock.lock();
+            try {
+                // Commands journaled while the save was encoded made progress its header doesn't have yet
+                var latest = progress.get(name);
+                if (written != null && latest != null && latest.saved_at().isAfter(save.header().saved_at())) {
+                    rewriteHeader(name, written);
+                }
+                writing_name = null;
+                writing = null;
+                saveWritten.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static Path write(String name, PendingSave save) throws IOException {
+        var saves_path = SaveManager.getSaveDirectory();
+        Files.createDirectories(saves_path);
+        var target = saves_path.resolve(name + save.format().extension);
+        var data = save.format().encode(save.snapshot());
+        var header = new SaveHeader(save.header().saved_at(), save.header().room(), data.length);
+        writeAtomically(target, header.encode(), data);
+        SaveCatalog.INSTANCE.written(SaveSummary.of(name, header));
+        // A save in another format would otherwise shadow or duplicate this one
+        for (var other : SaveFormat.values()) {
+            if (other != save.format()) {
+                Files.deleteIfExists(saves_path.resolve(name + other.extension));
+            }
+        }
+        return target;
+    }
+
+    /// Replaces the file's contents with the parts written one after another, such that the file holds either its old or
+    /// its new contents even if the process or the machine crashes halfway.
+    static void writeAtomically(Path target, byte[]... parts) throws IOException {
+        var temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        try (var channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (var part : parts) {
+                var buffer = ByteBuffer.wrap(part);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            channel.force(true);
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        // Persist the rename itself. Directories can't be opened for syncing on every platform, where this is skipped.
+        try (var directory = FileChannel.open(target.getParent(), StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException ignored) {
+        }
+    }
+
+    record PendingSave(SaveFormat format, SaveHeader header, GameState snapshot, Runnable on_written) {
+    }
+
+    private record Progress(Instant saved_at, String room) {
+    }
+}
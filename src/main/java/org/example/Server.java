@@ -0,0 +1,142 @@
+package org.example;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/// Hosts many independent games from one JVM. Every connection gets its own `ZorkInstance` and `SocketViewController`,
+/// driven by a virtual thread, while the command registry, its compiled patterns and the initial world template are
+/// shared by all sessions.
+///
+/// The saves are shared too, so a client can continue its game after reconnecting: every session lists the same save
+/// directory and can load or delete any save. Only one session at a time plays in a save, the others are refused it
+/// until that session's game ends.
+///
+/// Usage: `--server [--port PORT | --unix PATH] [--load-test CLIENTS [--duration SECONDS]]`
+public class Server {
+    static final int DEFAULT_PORT = 4431;
+    private static final Duration REPORT_INTERVAL = Duration.ofSeconds(5);
+    private static final long BYTES_PER_GB = 1024L * 1024 * 1024;
+    // Large enough for a burst of load test clients connecting at once
+    private static final int ACCEPT_BACKLOG = 4096;
+
+    private final ServerSocketChannel channel;
+    private final AtomicInteger activeSessions = new AtomicInteger();
+    private final AtomicInteger sessionCounter = new AtomicInteger();
+    private final LongAdder commandCount = new LongAdder();
+
+    Server(SocketAddress address) throws IOException {
+        var family = address instanceof UnixDomainSocketAddress ? StandardProtocolFamily.UNIX : StandardProtocolFamily.INET;
+        this.channel = ServerSocketChannel.open(family);
+        this.channel.bind(address, ACCEPT_BACKLOG);
+    }
+
+    static void main(String[] args) throws IOException, InterruptedException {
+        SocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), DEFAULT_PORT);
+        int load_test_clients = 0;
+        var load_test_duration = Duration.ofSeconds(30);
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port" -> address = new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(args[++i]));
+                case "--unix" -> {
+                    var path = Path.of(args[++i]);
+                    // A socket file left behind by a previous run would make binding fail
+                    Files.deleteIfExists(path);
+                    path.toFile().deleteOnExit();
+                    address = UnixDomainSocketAddress.of(path);
+                }
+                case "--load-test" -> load_test_clients = Integer.parseInt(args[++i]);
+                case "--duration" -> load_test_duration = Duration.ofSeconds(Long.parseLong(args[++i]));
+                default -> {
+                }
+            }
+        }
+
+        var server = new Server(address);
+        System.err.println("Zork server listening on " + server.channel.getLocalAddress());
+        Thread.ofVirtual().name("zork-server-accept").start(server::acceptLoop);
+        if (load_test_clients > 0) {
+            Thread.ofVirtual().name("zork-server-report").start(() -> {
+                try {
+                    server.reportLoop();
+                } catch (InterruptedException ignored) {
+                }
+            });
+            ServerLoadGenerator.run(server, server.channel.getLocalAddress(), load_test_clients, load_test_duration);
+            System.exit(0);
+        }
+        server.reportLoop();
+    }
+
+    int activeSessions() {
+        return activeSessions.get();
+    }
+
+    long commandCount() {
+        return commandCount.sum();
+    }
+
+    private void acceptLoop() {
+        while (channel.isOpen()) {
+            try {
+                var client = channel.accept();
+                var session_id = sessionCounter.incrementAndGet();
+                Thread.ofVirtual().name("zork-session-" + session_id).start(() -> runSession(session_id, client));
+            } catch (IOException e) {
+                if (channel.isOpen()) {
+                    System.err.println("Failed to accept connection: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void runSession(int session_id, SocketChannel client) {
+        activeSessions.incrementAndGet();
+        try (client) {
+            CLI.run(new SocketViewController(client), commandCount::increment);
+        } catch (Exception e) {
+            System.err.println("Session " + session_id + " failed: " + e);
+        } finally {
+            activeSessions.decrementAndGet();
+        }
+    }
+
+    static long usedHeapBytes() {
+        var runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    static double sessionsPerGB(long heap_bytes, int sessions) {
+        if (heap_bytes <= 0) {
+            return 0;
+        }
+        return (double) sessions * BYTES_PER_GB / heap_bytes;
+    }
+
+    /// Periodically prints the number of sessions, throughput and heap usage.
+    void reportLoop() throws InterruptedException {
+        long previous_commands = commandCount();
+        while (channel.isOpen()) {
+            Thread.sleep(REPORT_INTERVAL);
+            long commands = commandCount();
+            int sessions = activeSessions();
+            long heap = usedHeapBytes();
+            System.err.printf("sessions=%d commands/s=%.1f heap=%.1fMB sessions/GB=%.0f%n",
+                    sessions,
+                    (commands - previous_commands) / (double) REPORT_INTERVAL.toSeconds(),
+                    heap / (1024.0 * 1024.0),
+                    sessionsPerGB(heap, sessions));
+            previous_commands = commands;
+        }
+    }
+}
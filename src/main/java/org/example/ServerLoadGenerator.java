@@ -0,0 +1,116 @@
+package org.example;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.SocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/// Drives a `Server` with scripted clients, each on its own virtual thread, and reports the throughput and the heap cost
+/// of a session.
+final class ServerLoadGenerator {
+    // Walks around the house and handles items without ever reaching one of the endings
+    static final List<String> SCRIPT = List.of("look", "go south", "go east", "take keys", "drop keys", "go west", "map", "go north");
+
+    private ServerLoadGenerator() {
+    }
+
+    static void run(Server server, SocketAddress address, int clients, Duration duration) throws InterruptedException {
+        System.gc();
+        long baseline_heap = Server.usedHeapBytes();
+
+        var deadline = System.nanoTime() + duration.toNanos();
+        var in_game = new CountDownLatch(clients);
+        var round_trips = new LongAdder();
+        var threads = new ArrayList<Thread>(clients);
+        for (int i = 0; i < clients; i++) {
+            var client_id = i;
+            threads.add(Thread.ofVirtual().name("zork-load-" + client_id).start(() -> runClient(address, client_id, deadline, in_game, round_trips)));
+        }
+
+        // Measure while every session is alive and has its own game loaded
+        in_game.await();
+        System.gc();
+        long loaded_heap = Server.usedHeapBytes();
+        int sessions = server.activeSessions();
+        long start_commands = server.commandCount();
+        long start = System.nanoTime();
+
+        for (var thread : threads) {
+            thread.join();
+        }
+        double elapsed_seconds = (System.nanoTime() - start) / 1e9;
+        long commands = server.commandCount() - start_commands;
+        long session_heap = Math.max(loaded_heap - baseline_heap, 0);
+
+        System.err.printf("Load test: %d clients for %ds%n", clients, duration.toSeconds());
+        System.err.printf("  commands: %d, %.1f commands/s (%d client round trips)%n", commands, commands / elapsed_seconds, round_trips.sum());
+        System.err.printf("  heap: %.1fMB baseline, %.1fMB with %d sessions, %.1fKB per session, ~%.0f sessions/GB%n",
+                baseline_heap / (1024.0 * 1024.0),
+                loaded_heap / (1024.0 * 1024.0),
+                sessions,
+                sessions == 0 ? 0 : session_heap / 1024.0 / sessions,
+                Server.sessionsPerGB(session_heap, sessions));
+
+        // The scripted games are autosaved like any other game, but aren't worth keeping
+        for (int i = 0; i < clients; i++) {
+            SaveManager.deleteSave(saveName(i));
+        }
+    }
+
+    private static String saveName(int client_id) {
+        return "load-test-" + client_id;
+    }
+
+    private static void runClient(SocketAddress address, int client_id, long deadline, CountDownLatch in_game, LongAdder round_trips) {
+        var counted = false;
+        try (var channel = SocketChannel.open(address)) {
+            var reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            var writer = new PrintStream(Channels.newOutputStream(channel), true, StandardCharsets.UTF_8);
+
+            if (!skipUntil(reader, line -> line.startsWith("Choose an option number"))) {
+                return;
+            }
+            // A name that isn't picked from the list always starts a new game
+            writer.println(saveName(client_id));
+            if (!skipUntil(reader, line -> line.endsWith(CLI.COMMAND_PROMPT))) {
+                return;
+            }
+            in_game.countDown();
+            counted = true;
+
+            for (int step = 0; System.nanoTime() < deadline; step++) {
+                writer.println(SCRIPT.get(step % SCRIPT.size()));
+                if (!skipUntil(reader, line -> line.endsWith(CLI.COMMAND_PROMPT))) {
+                    return;
+                }
+                round_trips.increment();
+            }
+        } catch (IOException e) {
+            System.err.println("Load test client " + client_id + " failed: " + e.getMessage());
+        } finally {
+            if (!counted) {
+                in_game.countDown();
+            }
+        }
+    }
+
+    // Returns false if the server closed the connection first
+    private static boolean skipUntil(BufferedReader reader, Predicate<String> condition) throws IOException {
+        for (var line = reader.readLine(); line != null; line = reader.readLine()) {
+            if (condition.test(line)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,25 @@
+package org.example;
+
+import java.io.BufferedOutputStream;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/// A text view for a client connected to the `Server`. Output, including errors, is buffered and sent to the client
+/// whenever the game waits for input.
+public class SocketViewController extends TerminalViewController {
+    SocketViewController(SocketChannel channel) {
+        this(channel, new PrintStream(new BufferedOutputStream(Channels.newOutputStream(channel)), false, StandardCharsets.UTF_8));
+    }
+
+    private SocketViewController(SocketChannel channel, PrintStream output) {
+        super(Channels.newInputStream(channel), output, output);
+    }
+
+    @Override
+    public void notifyOfCompletion() {
+        // Unlike a terminal, the connection stays open so the client can choose to play again
+        exitRequested = true;
+    }
+}
@@ -0,0 +1,133 @@
+package org.example;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/// A grid that only allocates storage for the areas that contain values, split into 16x16 chunks keyed by their packed
+/// chunk coordinates. Memory scales with the number of occupied chunks rather than with the grid's area, which makes it
+/// suitable for large grids that are mostly empty.
+public class SparseGrid<T> implements Grid<T> {
+    static final int CHUNK_SHIFT = 4;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final HashMap<Long, Chunk> chunks = new HashMap<>();
+    private final int width;
+    private final int height;
+
+    private static class Chunk {
+        final Object[] cells = new Object[CHUNK_SIZE * CHUNK_SIZE];
+        int occupied = 0;
+    }
+
+    public SparseGrid(int width, int height) {
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException("Grid dimensions must not be negative: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    private static long chunkKey(int row, int column) {
+        return ((long) (row >> CHUNK_SHIFT) << 32) | ((column >> CHUNK_SHIFT) & 0xFFFFFFFFL);
+    }
+
+    private static int cellIndex(int row, int column) {
+        return ((row & CHUNK_MASK) << CHUNK_SHIFT) | (column & CHUNK_MASK);
+    }
+
+    private void checkBounds(int row, int column) {
+        if (row >= 0 && column >= 0 && row < height && column < width) {
+            return;
+        }
+        throw new IndexOutOfBoundsException("Index (" + row + ", " + column + ") is out of bounds for grid of size " + width + "x" + height);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int row, int column) {
+        checkBounds(row, column);
+        var chunk = chunks.get(chunkKey(row, column));
+        if (chunk == null) {
+            return null;
+        }
+        return (T) chunk.cells[cellIndex(row, column)];
+    }
+
+    @Override
+    public void set(int row, int column, T value) {
+        checkBounds(row, column);
+        var key = chunkKey(row, column);
+        var chunk = chunks.get(key);
+        if (chunk == null) {
+            if (value == null) {
+                return;
+            }
+            chunk = new Chunk();
+            chunks.put(key, chunk);
+        }
+        var index = cellIndex(row, column);
+        var previous = chunk.cells[index];
+        chunk.cells[index] = value;
+        if (previous == null && value != null) {
+            chunk.occupied++;
+        } else if (previous != null && value == null && --chunk.occupied == 0) {
+            // Release chunks as soon as they become empty
+            chunks.remove(key);
+        }
+    }
+
+    /// Returns the number of allocated chunks.
+    public int chunkCount() {
+        return chunks.size();
+    }
+
+    @Override
+    public List<T> row(int row) {
+        if (row < 0 || row >= height) {
+            throw new IndexOutOfBoundsException("Row " + row + " is out of bounds for grid of size " + width + "x" + height);
+        }
+        return new AbstractList<>() {
+            @Override
+            public T get(int column) {
+                return SparseGrid.this.get(row, column);
+            }
+
+            @Override
+            public int size() {
+                return width;
+            }
+        };
+    }
+
+    @Override
+    public Stream<T> streamVal() {
+        return IntStream.range(0, height).boxed().flatMap(row -> row(row).stream());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Stream<T> streamPresent() {
+        return chunks.values().stream().flatMap(chunk -> Arrays.stream(chunk.cells)).filter(Objects::nonNull).map(cell -> (T) cell);
+    }
+
+    @Override
+    public String toString() {
+        return "SparseGrid{width=" + width + ", height=" + height + ", chunks=" + chunks.size() + "}";
+    }
+}
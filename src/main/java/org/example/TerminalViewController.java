@@ -1,13 +1,27 @@
 package org.example;
 
+import java.io.InputStream;
+import java.io.PrintStream;
 import java.util.List;
 import java.util.Optional;
 import java.util.Scanner;
 
 public class TerminalViewController implements ViewController {
-    private final Scanner scanner = new Scanner(System.in);
+    private final Scanner scanner;
+    private final PrintStream out;
+    private final PrintStream err;
     volatile boolean exitRequested = false;
 
+    public TerminalViewController() {
+        this(System.in, System.out, System.err);
+    }
+
+    TerminalViewController(InputStream in, PrintStream out, PrintStream err) {
+        this.scanner = new Scanner(in);
+        this.out = out;
+        this.err = err;
+    }
+
     @Override
     public boolean WasExitRequested() {
         return exitRequested;
@@ -25,13 +39,13 @@ public class TerminalViewController implements ViewController {
     @Override
     public <T> Optional<T> presentSelectionList(List<T> options) {
         if (options == null || options.isEmpty()) {
-            System.out.println("(no options)");
+            out.println("(no options)");
             return Optional.empty();
         }
         for (int i = 0; i < options.size(); i++) {
-            System.out.println((i + 1) + ") " + options.get(i));
+            out.println((i + 1) + ") " + options.get(i));
         }
-        System.out.print("Choose an option (1-" + options.size() + ") or type input: ");
+        out.print("Choose an option (1-" + options.size() + ") or type input: ");
         var lineOpt = consumeTextInput();
         if (lineOpt.isEmpty()) return Optional.empty();
         var line = lineOpt.get().trim();
@@ -39,11 +53,11 @@ public class TerminalViewController implements ViewController {
         try {
             idx = Integer.parseInt(line);
         } catch (NumberFormatException e) {
-            System.out.println("Input was not a number.");
+            out.println("Input was not a number.");
             return Optional.empty();
         }
         if (idx < 1 || idx > options.size()) {
-            System.out.println("Invalid selection number.");
+            out.println("Invalid selection number.");
             return Optional.empty();
         }
         return Optional.of(options.get(idx - 1));
@@ -52,9 +66,9 @@ public class TerminalViewController implements ViewController {
     @Override
     public String presentTextSelectionListWithPrompt(List<String> options, String prompt) {
         for (int i = 0; i < options.size(); i++) {
-            System.out.println((i + 1) + ") " + options.get(i));
+            out.println((i + 1) + ") " + options.get(i));
         }
-        System.out.print("Choose an option number or " + prompt + "\n> ");
+        out.print("Choose an option number or " + prompt + "\n> ");
         var line = consumeTextInput().orElse("");
         var trimmed = line.trim();
         try {
@@ -69,6 +83,8 @@ public class TerminalViewController implements ViewController {
 
     @Override
     public Optional<String> consumeTextInput() {
+        // Anything written so far is likely what the user is responding to
+        out.flush();
         try {
             if (!scanner.hasNextLine()) return Optional.empty();
             String line = scanner.nextLine();
@@ -80,22 +96,22 @@ public class TerminalViewController implements ViewController {
 
     @Override
     public void presentTextPrompt(String prompt) {
-        System.out.println(prompt);
+        out.println(prompt);
         // System.out.print(">");
     }
 
     @Override
     public void presentMessage(String message) {
-        System.out.println(message);
+        out.println(message);
     }
 
     @Override
     public void presentUrgentMessage(String message) {
-        System.out.println("! " + message);
+        out.println("! " + message);
     }
 
     @Override
     public void presentErrorMessage(String message) {
-        System.err.println("ERROR: " + message);
+        err.println("ERROR: " + message);
     }
 }
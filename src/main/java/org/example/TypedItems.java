@@ -2,8 +2,6 @@ package org.example;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 
-import java.util.Map;
-
 enum PizzaStatus {
     Cooking, Burnt, Ready, Taken
 }
@@ -12,38 +10,13 @@ enum PizzaItemState {
     Good, Burnt
 }
 
-public class TypedItems {
-    @JsonProperty("keys")
-    final Keys keys = new Keys();
-
-    @JsonProperty("computer")
-    final Computer computer = new Computer();
-
-    @JsonProperty("oven")
-    final Oven oven = new Oven();
-
-    @JsonProperty("pizza")
-    final Pizza pizza = new Pizza();
-
-    @JsonProperty("mold")
-    final BlackMold mold = new BlackMold();
-
-    private TypedItems() {
-    }
-
-    public Map<String, Item> toItemMap() {
-        return Map.of("keys", keys, "computer", computer, "oven", oven, "pizza", pizza, "mold", mold);
-    }
-}
-
 class Keys extends Item {
     @JsonProperty("wasTaken")
     boolean wasTaken = false;
 
     @Override
     public void pickUp(GameState context) {
-        if (!wasTaken) {
-            var oven = context.typed_items.oven;
+        if (!wasTaken && context.itemForUpdate("oven") instanceof Oven oven) {
             oven.status = oven.status == PizzaStatus.Cooking ? PizzaStatus.Ready : oven.status;
         }
         wasTaken = true;
@@ -57,7 +30,10 @@ class Keys extends Item {
             context.controller.presentUrgentMessage("You can't use the keys here.");
             return;
         }
-        var outdoors = context.typed_rooms.outdoors;
+        if (!(context.roomForUpdate("outdoors") instanceof Outdoors outdoors)) {
+            context.controller.presentUrgentMessage("There is no door to unlock.");
+            return;
+        }
         if (!outdoors.locked) {
             context.controller.presentUrgentMessage("The door is already unlocked.");
         }
@@ -97,15 +73,17 @@ class Oven extends Item {
             case Cooking -> context.controller.presentMessage("The pizza is still cooking.");
             case Ready -> {
                 context.controller.presentMessage("You open the oven and take out the perfectly cooked pizza.");
-                context.typed_items.pizza.state = PizzaItemState.Good;
+                ((Pizza) context.itemForUpdate("pizza")).setState(context, PizzaItemState.Good);
                 context.player.addItem("pizza");
+                context.changed(GameChange.Inventory);
                 status = PizzaStatus.Taken;
             }
             case Burnt -> {
                 context.controller.presentMessage("You open the oven in a hurry, and are hit by a wave of smoke.");
                 context.controller.presentMessage("You burnt the pizza.");
-                context.typed_items.pizza.state = PizzaItemState.Burnt;
+                ((Pizza) context.itemForUpdate("pizza")).setState(context, PizzaItemState.Burnt);
                 context.player.addItem("pizza");
+                context.changed(GameChange.Inventory);
                 status = PizzaStatus.Taken;
             }
             case Taken -> context.controller.presentMessage("The oven is cooling down.");
@@ -125,6 +103,12 @@ class Pizza extends Item {
         this.state = state;
     }
 
+    /// The pizza's name depends on its state, so this keeps the game's item index up to date.
+    void setState(GameState context, PizzaItemState state) {
+        this.state = state;
+        context.itemRenamed(this);
+    }
+
     @Override
     public void useInRoom(GameState context) {
         context.controller.presentMessage("You think about eating the " + this.getName().toLowerCase() + " off the floor, but decide you're above that.");
@@ -137,11 +121,13 @@ class Pizza extends Item {
             case Good -> {
                 context.controller.presentMessage("You enjoy a well cooked pizza, preparing you for the dangerous journey outside.");
                 context.player.removeItem("pizza");
+                context.changed(GameChange.Inventory);
             }
             case Burnt -> {
                 if (triedToEatBurnt) {
                     context.controller.presentMessage("You decide to eat the burnt pizza, powering through the smell. You lose all will to live.");
                     context.player.removeItem("pizza");
+                    context.changed(GameChange.Inventory);
                     return;
                 }
                 context.controller.presentMessage("The smell of the burnt pizza is overwhelming, and you do not manage to eat it.");
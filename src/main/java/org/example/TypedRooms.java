@@ -2,23 +2,6 @@ package org.example;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 
-import java.util.Map;
-
-public class TypedRooms {
-    @JsonProperty("outdoors")
-    Outdoors outdoors;
-
-    @JsonProperty("bathroom")
-    Bathroom bathroom;
-
-    private TypedRooms() {
-    }
-
-    public Map<String, Room> toRoomMap() {
-        return Map.of("outdoors", outdoors, "bathroom", bathroom);
-    }
-}
-
 class Bathroom extends Room {
     @JsonProperty("entered_count")
     int enteredCount = 0;
@@ -58,10 +41,10 @@ class Outdoors extends Room {
             context.controller.presentUrgentMessage("You have the key, but the door is locked!");
             return;
         }
-        if (context.typed_items.oven.status == PizzaStatus.Ready) {
+        if (context.item("oven") instanceof Oven oven && oven.status == PizzaStatus.Ready) {
             context.controller.presentUrgentMessage("You realize you forgot the pizza!");
             context.controller.presentUrgentMessage("You notice a faint burnt smell.");
-            context.typed_items.oven.status = PizzaStatus.Burnt;
+            ((Oven) context.itemForUpdate("oven")).status = PizzaStatus.Burnt;
             return;
         }
         super.onEnter(context);
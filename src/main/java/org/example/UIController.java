@@ -15,30 +15,46 @@ import org.controlsfx.control.textfield.TextFields;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.IntStream;
 
 public class UIController extends Application implements ViewController {
+    /// Set `-Dzork.ui.coalesceOutput=false` to hand every message to the FX thread individually.
+    private static final boolean COALESCE_OUTPUT = Boolean.parseBoolean(System.getProperty("zork.ui.coalesceOutput", "true"));
+    /// Set `-Dzork.ui.reportFxHandoffs=true` to print how many tasks each command handed to the FX thread.
+    private static final boolean REPORT_FX_HANDOFFS = Boolean.getBoolean("zork.ui.reportFxHandoffs");
     private final EnumMap<Direction, Button> directionButtons = new EnumMap<>(Direction.class);
     private final EnumMap<Direction, Boolean> savedButtonState = new EnumMap<>(Direction.class);
     volatile ZorkInstance instance;
-    private BlockingArrayListDeque<String> inputQueue;
+    private BlockingRingDeque<String> inputQueue;
     private volatile boolean exitRequested = false;
     private volatile boolean gameExited = false;
     private TextField commandPromptField;
     private TextArea outputArea;
     private Thread gameThread;
-    private List<String> autoCompleteOverrides = null;
+    private volatile List<String> autoCompleteOverrides = null;
+    // Completes the command prompt off the FX thread
+    private final AutocompleteService autocompleteService = new AutocompleteService(this::autocomplete);
+    // Output written by the game thread, appended to the output area at most once per pulse
+    private final ConcurrentLinkedQueue<String> pendingOutput = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean outputFlushRequested = new AtomicBoolean(false);
+    // Number of runLater calls and pulse requests, used to measure the effect of output coalescing
+    private final AtomicLong fxHandoffs = new AtomicLong();
 
     static void main(String[] args) {
         launch(args);
     }
 
     public void setAutoCompleteOverrides(List<String> autoCompleteOverrides) {
-        Platform.runLater(() -> this.autoCompleteOverrides = autoCompleteOverrides);
+        this.autoCompleteOverrides = autoCompleteOverrides;
+        autocompleteService.invalidate();
     }
 
     public void removeAutoCompleteOverrides() {
-        Platform.runLater(() -> this.autoCompleteOverrides = null);
+        this.autoCompleteOverrides = null;
+        autocompleteService.invalidate();
     }
 
     public List<String> autocomplete(String text) {
@@ -49,9 +65,18 @@ public class UIController extends Application implements ViewController {
                 .orElseGet(() -> Optional.ofNullable(this.instance).map(instance -> instance.state.autocomplete(text)).orElse(List.of()));
     }
 
+    private void updateDirectionButtons(GameState game) {
+        var room_paths = game.getCurrentRoom().paths;
+        runOnFxThread(() -> {
+            for (var direction : Direction.values()) {
+                directionButtons.get(direction).setDisable(!room_paths.containsKey(direction));
+            }
+        });
+    }
+
     @Override
     public void start(Stage stage) throws IOException {
-        this.inputQueue = new BlockingArrayListDeque<>(32);
+        this.inputQueue = new BlockingRingDeque<>(32);
         Parent root = FXMLLoader.load(Objects.requireNonNull(getClass().getClassLoader().getResource("GameView.fxml")));
         Scene scene = new Scene(root);
 
@@ -69,10 +94,13 @@ public class UIController extends Application implements ViewController {
             directionButtons.put(direction, button);
         }
 
-        Callback<AutoCompletionBinding.ISuggestionRequest, Collection<String>> suggestionProvider = request -> this.autocomplete(request.getUserText());
+        // ControlsFX asks for suggestions on a background thread, which waits for the service to finish or be superseded
+        Callback<AutoCompletionBinding.ISuggestionRequest, Collection<String>> suggestionProvider = request -> autocompleteService.completeBlocking(request.getUserText());
         var autocompletion_handle = TextFields.bindAutoCompletion(this.commandPromptField, suggestionProvider);
         autocompletion_handle.setDelay(0);
 
+        scene.addPreLayoutPulseListener(this::flushOutput);
+
         scene.getStylesheets().add(Objects.requireNonNull(getClass().getClassLoader().getResource("application.css")).toExternalForm());
         stage.setScene(scene);
         stage.show();
@@ -89,15 +117,10 @@ public class UIController extends Application implements ViewController {
                         return;
                     }
                     this.instance = maybe_instance.get();
-                    this.instance.state.registerUpdateHook(game -> {
-                        var room_paths = game.getCurrentRoom().paths;
-                        Platform.runLater(() -> {
-                            for (var direction : Direction.values()) {
-                                directionButtons.get(direction).setDisable(!room_paths.containsKey(direction));
-                            }
-                        });
-                    });
-                    instance.state.notifyUpdateHooks();
+                    autocompleteService.invalidate();
+                    // Only moving and changed exits enable other direction buttons
+                    this.instance.state.registerUpdateHook(EnumSet.of(GameChange.CurrentRoom, GameChange.Rooms), (game, _) -> updateDirectionButtons(game));
+                    updateDirectionButtons(instance.state);
                     while (!WasExitRequested()) {
                         presentTextPrompt("Please enter the action you want to perform\n> ");
                         var line = consumeTextInput();
@@ -105,7 +128,13 @@ public class UIController extends Application implements ViewController {
                             shutdownThreads();
                             return;
                         }
+                        var handoffs_before = fxHandoffs.get();
                         instance.advanceGame(this, line.get());
+                        // Commands can move the player, change items or create and delete saves
+                        autocompleteService.invalidate();
+                        if (REPORT_FX_HANDOFFS) {
+                            System.err.println("FX thread handoffs for \"" + line.get() + "\": " + (fxHandoffs.get() - handoffs_before));
+                        }
                     }
                     System.err.println(this.exitRequested);
                     if (!this.exitRequested) {
@@ -138,7 +167,7 @@ public class UIController extends Application implements ViewController {
     }
 
     private void disableAndSaveMoveButtons() {
-        Platform.runLater(() -> {
+        runOnFxThread(() -> {
             for (var button : directionButtons.entrySet()) {
                 savedButtonState.put(button.getKey(), button.getValue().isDisabled());
                 button.getValue().setDisable(true);
@@ -147,19 +176,50 @@ public class UIController extends Application implements ViewController {
     }
 
     private void restoreMoveButtons() {
-        Platform.runLater(() -> {
+        runOnFxThread(() -> {
             for (var button : directionButtons.entrySet()) {
                 button.getValue().setDisable(savedButtonState.get(button.getKey()));
             }
         });
     }
 
+    private void runOnFxThread(Runnable task) {
+        fxHandoffs.incrementAndGet();
+        Platform.runLater(task);
+    }
+
     private void appendOutput(String text) {
-        Platform.runLater(() -> {
-            outputArea.appendText(text);
-            // Scroll to the bottom
-            outputArea.setScrollTop(Double.MAX_VALUE);
-        });
+        if (!COALESCE_OUTPUT) {
+            runOnFxThread(() -> {
+                outputArea.appendText(text);
+                // Scroll to the bottom
+                outputArea.setScrollTop(Double.MAX_VALUE);
+            });
+            return;
+        }
+        pendingOutput.add(text);
+        // Only the first message since the last flush needs to ask for a pulse
+        if (outputFlushRequested.compareAndSet(false, true)) {
+            fxHandoffs.incrementAndGet();
+            Platform.requestNextPulse();
+        }
+    }
+
+    // Runs on the FX thread before every layout pass, so a burst of messages costs one append, one scroll and one relayout
+    private void flushOutput() {
+        if (!outputFlushRequested.getAndSet(false)) {
+            return;
+        }
+        var text = new StringBuilder();
+        for (var chunk = pendingOutput.poll(); chunk != null; chunk = pendingOutput.poll()) {
+            text.append(chunk);
+        }
+        if (text.isEmpty()) {
+            return;
+        }
+        outputArea.appendText(text.toString());
+        // Scroll to the bottom
+        outputArea.setScrollTop(Double.MAX_VALUE);
     }
 
     @Override
@@ -175,6 +235,7 @@ public class UIController extends Application implements ViewController {
     public void shutdownThreads() {
         exitRequested = true;
         gameExited = true;
+        autocompleteService.close();
         // Unblock the game thread if it's waiting for input
         inputQueue.try_push_front("");
         inputQueue.try_push_front("");
@@ -183,7 +244,7 @@ public class UIController extends Application implements ViewController {
             gameThread.interrupt();
         } catch (Exception ignored) {
         }
-        Platform.runLater(() -> {
+        runOnFxThread(() -> {
             try {
                 Platform.exit();
             } catch (Exception ignored) {
@@ -282,7 +343,7 @@ public class UIController extends Application implements ViewController {
 
     @Override
     public void presentTextPrompt(String prompt) {
-        Platform.runLater(() -> {
+        runOnFxThread(() -> {
             try {
                 commandPromptField.setPromptText(prompt);
                 commandPromptField.requestFocus();
@@ -4,8 +4,10 @@ import java.util.Arrays;
 
 // Used as a wrapper when packaging into an uber-jar using Apache Shade
 public class UIMain {
-    static void main(String[] args) {
-        if (Arrays.asList(args).contains("--cli")) {
+    static void main(String[] args) throws Exception {
+        if (Arrays.asList(args).contains("--server")) {
+            Server.main(args);
+        } else if (Arrays.asList(args).contains("--cli")) {
             CLI.main(args);
         } else {
             UIController.main(args);
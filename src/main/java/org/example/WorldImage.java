@@ -0,0 +1,372 @@
+package org.example;
+
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.node.ObjectNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.net.URISyntaxException;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/// A world definition compiled ahead of time into a binary image, so starting a game neither goes through Jackson for
+/// the whole world nor lays out the map.
+///
+/// The image holds a pool of every distinct string, a table of the plain rooms with their exits and items, a table of
+/// the plain items, and the map coordinates of every room. The rooms and items with a type, which have custom behavior,
+/// and the player are kept as a JSON document in the pool. The image is memory-mapped, and every string is decoded
+/// the first time a game needs it and then shared by all games. Room and item descriptions are only decoded once they
+/// are shown.
+///
+/// The build compiles `initial_state.json` into the `initial_state.world` resource by running `main`. Without the
+/// resource, such as when running from an IDE without the build step, games are created from the JSON as before.
+final class WorldImage {
+    static final String RESOURCE = "initial_state.world";
+    private static final int MAGIC = 0x5A574931; // "ZWI1"
+    private static final int VERSION = 1;
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+    private static final int NONE = -1;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // The header is a sequence of ints, at these indices
+    private static final int HEADER_MAGIC = 0, HEADER_VERSION = 1, HEADER_DIRECTIONS = 2, HEADER_STRINGS = 3,
+            HEADER_ROOMS = 4, HEADER_ITEMS = 5, HEADER_PLACEMENTS = 6, HEADER_TYPED_JSON = 7,
+            HEADER_STRING_TABLE_OFFSET = 8, HEADER_ROOMS_OFFSET = 9, HEADER_ROOM_ITEMS_OFFSET = 10,
+            HEADER_ITEMS_OFFSET = 11, HEADER_ALIASES_OFFSET = 12, HEADER_PLACEMENTS_OFFSET = 13,
+            HEADER_STRING_DATA_OFFSET = 14;
+    private static final int HEADER_SIZE = 15 * Integer.BYTES;
+    // Ints per record. A room is its id, name and description, one exit per direction, and the range of its items.
+    private static final int ROOM_INTS = 5 + Direction.values().length;
+    // An item is its id, name and description, and the range of its aliases
+    private static final int ITEM_INTS = 5;
+    // A placement is a room id and its map row and column
+    private static final int PLACEMENT_INTS = 3;
+
+    private static volatile Optional<WorldImage> bundled = null;
+
+    private final MemorySegment image;
+    // Strings decoded so far, by pool index. Races only decode a string twice.
+    private final String[] strings;
+    private final int string_table_offset, string_data_offset;
+
+    private WorldImage(MemorySegment image) throws IOException {
+        this.image = image;
+        if (image.byteSize() < HEADER_SIZE || header(HEADER_MAGIC) != MAGIC || header(HEADER_VERSION) != VERSION) {
+            throw new IOException("Not a world image");
+        }
+        if (header(HEADER_DIRECTIONS) != Direction.values().length) {
+            throw new IOException("World image was compiled for different directions");
+        }
+        this.strings = new String[header(HEADER_STRINGS)];
+        this.string_table_offset = header(HEADER_STRING_TABLE_OFFSET);
+        this.string_data_offset = header(HEADER_STRING_DATA_OFFSET);
+    }
+
+    /// Maps a world image file.
+    static WorldImage open(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // Unmapped once no game refers to the image anymore
+            return new WorldImage(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), Arena.ofAuto()));
+        }
+    }
+
+    static WorldImage of(byte[] data) throws IOException {
+        return new WorldImage(MemorySegment.ofArray(data));
+    }
+
+    /// Returns the image of the bundled world, if the build compiled one. It is opened once, and shared by every game.
+    static Optional<WorldImage> bundled() {
+        var cached = bundled;
+        if (cached != null) {
+            return cached;
+        }
+        cached = Optional.empty();
+        var resource = WorldImage.class.getClassLoader().getResource(RESOURCE);
+        if (resource != null) {
+            try {
+                if (resource.getProtocol().equals("file")) {
+                    cached = Optional.of(open(Path.of(resource.toURI())));
+                } else {
+                    // Packaged in a jar, where it can't be mapped
+                    try (var stream = resource.openStream()) {
+                        cached = Optional.of(of(stream.readAllBytes()));
+                    }
+                }
+            } catch (IOException | URISyntaxException e) {
+                System.err.println("Failed to open the world image, creating games from JSON: " + e);
+            }
+        }
+        bundled = cached;
+        return cached;
+    }
+
+    /// Creates a new game from the image. Only the JSON part of the image goes through Jackson.
+    GameState newGame() throws JacksonException {
+        var game = SaveFormat.JSON.decode(string(header(HEADER_TYPED_JSON)).getBytes(StandardCharsets.UTF_8));
+
+        var room_count = header(HEADER_ROOMS);
+        var rooms_offset = header(HEADER_ROOMS_OFFSET);
+        var room_items_offset = header(HEADER_ROOM_ITEMS_OFFSET);
+        var directions = Direction.values();
+        var rooms = game.loaded_rooms;
+        for (int i = 0; i < room_count; i++) {
+            long record = rooms_offset + (long) i * ROOM_INTS * Integer.BYTES;
+            var room = new Room();
+            room.name = stringAt(record, 1);
+            room.describeLazily(lazyStringAt(record, 2));
+            for (int d = 0; d < directions.length; d++) {
+                var exit = intAt(record, 3 + d);
+                if (exit != NONE) {
+                    room.paths.put(directions[d], string(exit));
+                }
+            }
+            int first_item = intAt(record, 3 + directions.length), item_count = intAt(record, 4 + directions.length);
+            for (int j = 0; j < item_count; j++) {
+                room.addItem(string(image.get(INT, room_items_offset + (long) (first_item + j) * Integer.BYTES)));
+            }
+            rooms = rooms.with(stringAt(record, 0), room);
+        }
+        game.loaded_rooms = rooms;
+
+        var item_count = header(HEADER_ITEMS);
+        var items_offset = header(HEADER_ITEMS_OFFSET);
+        var aliases_offset = header(HEADER_ALIASES_OFFSET);
+        var items = game.loaded_items;
+        for (int i = 0; i < item_count; i++) {
+            long record = items_offset + (long) i * ITEM_INTS * Integer.BYTES;
+            var item = new Item();
+            item.setName(stringAt(record, 1));
+            item.describeLazily(lazyStringAt(record, 2));
+            int first_alias = intAt(record, 3), alias_count = intAt(record, 4);
+            if (alias_count > 0) {
+                var aliases = new String[alias_count];
+                for (int j = 0; j < alias_count; j++) {
+                    aliases[j] = string(image.get(INT, aliases_offset + (long) (first_alias + j) * Integer.BYTES));
+                }
+                item.setAliases(List.of(aliases));
+            }
+            items = items.with(stringAt(record, 0), item);
+        }
+        game.loaded_items = items;
+
+        var placement_count = header(HEADER_PLACEMENTS);
+        var placements_offset = header(HEADER_PLACEMENTS_OFFSET);
+        var placements = new ArrayList<PendingPlacement>(placement_count);
+        for (int i = 0; i < placement_count; i++) {
+            long record = placements_offset + (long) i * PLACEMENT_INTS * Integer.BYTES;
+            placements.add(new PendingPlacement(stringAt(record, 0), intAt(record, 1), intAt(record, 2)));
+        }
+        game.roomUpdateHook(placements);
+        game.itemUpdateHook();
+        return game;
+    }
+
+    private int header(int index) {
+        return image.get(INT, (long) index * Integer.BYTES);
+    }
+
+    private int intAt(long record, int index) {
+        return image.get(INT, record + (long) index * Integer.BYTES);
+    }
+
+    private String stringAt(long record, int index) {
+        var string_index = intAt(record, index);
+        return string_index == NONE ? null : string(string_index);
+    }
+
+    // Doesn't touch the string until it's needed. Once decoded, it is shared with every other game.
+    private Supplier<String> lazyStringAt(long record, int index) {
+        var string_index = intAt(record, index);
+        return () -> string_index == NONE ? null : string(string_index);
+    }
+
+    private String string(int index) {
+        var decoded = strings[index];
+        if (decoded != null) {
+            return decoded;
+        }
+        long entry = string_table_offset + (long) index * 2 * Integer.BYTES;
+        var offset = image.get(INT, entry);
+        var length = image.get(INT, entry + Integer.BYTES);
+        var bytes = image.asSlice(string_data_offset + (long) offset, length).toArray(ValueLayout.JAVA_BYTE);
+        decoded = new String(bytes, StandardCharsets.UTF_8);
+        strings[index] = decoded;
+        return decoded;
+    }
+
+    /// Compiles a world definition in the format of `initial_state.json` into an image.
+    static byte[] compile(byte[] world_json) throws IOException {
+        // The world is loaded the way the game loads it, so the image holds exactly what the game would compute
+        var game = SaveFormat.JSON.decode(world_json);
+        game.roomUpdateHook();
+        game.itemUpdateHook();
+
+        var pool = new StringPool();
+        var typed = (ObjectNode) MAPPER.readTree(world_json);
+        // The plain rooms and items go into the tables
+        for (var property : List.of("rooms", "generic_rooms", "items", "inert_items")) {
+            if (typed.get(property) instanceof ObjectNode objects) {
+                var plain = new ArrayList<String>();
+                for (var entry : objects.properties()) {
+                    if (!entry.getValue().has("type")) {
+                        plain.add(entry.getKey());
+                    }
+                }
+                objects.remove(plain);
+            }
+        }
+        var typed_json = pool.add(MAPPER.writeValueAsString(typed));
+
+        var directions = Direction.values();
+        var rooms = new DataBuffer();
+        var room_items = new DataBuffer();
+        int room_item_count = 0;
+        // Sorted, so the same world always compiles into the same image
+        var plain_rooms = new TreeMap<String, Room>();
+        game.loaded_rooms.forEach((id, room) -> {
+            if (room.type() == null) {
+                plain_rooms.put(id, room);
+            }
+        });
+        for (var entry : plain_rooms.entrySet()) {
+            var room = entry.getValue();
+            rooms.writeInt(pool.add(entry.getKey()));
+            rooms.writeInt(pool.add(room.name));
+            rooms.writeInt(pool.add(room.getDescription()));
+            for (var direction : directions) {
+                rooms.writeInt(pool.add(room.paths.get(direction)));
+            }
+            rooms.writeInt(room_item_count);
+            rooms.writeInt(room.items.size());
+            for (var item : room.items.stream().sorted().toList()) {
+                room_items.writeInt(pool.add(item));
+                room_item_count++;
+            }
+        }
+
+        var items = new DataBuffer();
+        var aliases = new DataBuffer();
+        int alias_count = 0;
+        var plain_items = new TreeMap<String, Item>();
+        game.loaded_items.forEach((id, item) -> {
+            if (item.type() == null) {
+                plain_items.put(id, item);
+            }
+        });
+        for (var entry : plain_items.entrySet()) {
+            var item = entry.getValue();
+            items.writeInt(pool.add(entry.getKey()));
+            items.writeInt(pool.add(item.getName()));
+            items.writeInt(pool.add(item.getDescription()));
+            items.writeInt(alias_count);
+            items.writeInt(item.getAliases().size());
+            for (var alias : item.getAliases()) {
+                aliases.writeInt(pool.add(alias));
+                alias_count++;
+            }
+        }
+
+        var placements = new DataBuffer();
+        int placement_count = 0;
+        for (var id : new TreeMap<>(game.loaded_rooms).keySet()) {
+            var location = game.layout.locate(id);
+            if (location.isEmpty()) {
+                continue;
+            }
+            placements.writeInt(pool.add(id));
+            placements.writeInt(location.get().getRow());
+            placements.writeInt(location.get().getColumn());
+            placement_count++;
+        }
+
+        var string_table = new DataBuffer();
+        var string_data = new ByteArrayOutputStream();
+        for (var string : pool.strings) {
+            var bytes = string.getBytes(StandardCharsets.UTF_8);
+            string_table.writeInt(string_data.size());
+            string_table.writeInt(bytes.length);
+            string_data.write(bytes);
+        }
+
+        int string_table_offset = HEADER_SIZE;
+        int rooms_offset = string_table_offset + string_table.size();
+        int room_items_offset = rooms_offset + rooms.size();
+        int items_offset = room_items_offset + room_items.size();
+        int aliases_offset = items_offset + items.size();
+        int placements_offset = aliases_offset + aliases.size();
+        int string_data_offset = placements_offset + placements.size();
+
+        var out = new DataBuffer();
+        for (var value : new int[]{MAGIC, VERSION, directions.length, pool.strings.size(), plain_rooms.size(),
+                plain_items.size(), placement_count, typed_json, string_table_offset, rooms_offset,
+                room_items_offset, items_offset, aliases_offset, placements_offset, string_data_offset}) {
+            out.writeInt(value);
+        }
+        for (var section : List.of(string_table, rooms, room_items, items, aliases, placements)) {
+            section.writeTo(out);
+        }
+        string_data.writeTo(out.bytes);
+        return out.bytes.toByteArray();
+    }
+
+    /// The build step: compiles the world definition at the first path into an image at the second path.
+    static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: WorldImage <world json> <image>");
+            System.exit(1);
+        }
+        var image = compile(Files.readAllBytes(Path.of(args[0])));
+        var target = Path.of(args[1]);
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        Files.write(target, image);
+        System.out.println("Compiled " + args[0] + " into " + target + " (" + image.length + " bytes)");
+    }
+
+    // Interns the strings of an image, so every distinct string is stored once
+    private static class StringPool {
+        final ArrayList<String> strings = new ArrayList<>();
+        private final HashMap<String, Integer> indices = new HashMap<>();
+
+        int add(String string) {
+            if (string == null) {
+                return NONE;
+            }
+            return indices.computeIfAbsent(string, s -> {
+                strings.add(s);
+                return strings.size() - 1;
+            });
+        }
+    }
+
+    private static class DataBuffer {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream data = new DataOutputStream(bytes);
+
+        void writeInt(int value) throws IOException {
+            data.writeInt(value);
+        }
+
+        int size() {
+            return bytes.size();
+        }
+
+        void writeTo(DataBuffer other) throws IOException {
+            bytes.writeTo(other.bytes);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package org.example;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectReader;
+import tools.jackson.databind.ObjectWriter;
+import tools.jackson.dataformat.cbor.CBORMapper;
+
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/// A world split into regions of neighbouring rooms, each stored in a file of its own, so a game only holds the rooms
+/// around the player instead of the whole world.
+///
+/// A region world is a directory compiled from a world definition by `main`. It holds a file per region with its rooms
+/// and the items in them, the player and the items that aren't in any room in `world.json`, and a `RegionIndex` of
+/// where every room and item is. Games load the regions within `STREAM_DISTANCE` exits of the player as it moves, and
+/// unload the regions the player was least recently near once more than `RESIDENT_REGIONS` are loaded. A region the
+/// game modified is written back when it is unloaded, to a file that is kept as long as any version of the game refers
+/// to it, and saves of the game include it.
+final class WorldRegions {
+    /// Set `-Dzork.world=<directory>` to play a region world instead of the bundled world.
+    static final String WORLD = System.getProperty("zork.world");
+    /// Set `-Dzork.residentRegions=64` to keep more regions of a streamed world loaded per game.
+    static final int RESIDENT_REGIONS = Integer.getInteger("zork.residentRegions", 16);
+    /// Set `-Dzork.streamDistance=4` to load the regions of rooms further away from the player ahead of time.
+    static final int STREAM_DISTANCE = Integer.getInteger("zork.streamDistance", 2);
+    static final int DEFAULT_REGION_ROOMS = 256;
+    static final String MANIFEST = "world.json";
+    private static final String REGIONS = "regions";
+    // How long exiting the JVM waits for saves that may still read written back regions
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(10);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ObjectReader READER = MAPPER.readerFor(Region.class);
+    private static final ObjectWriter WRITER = MAPPER.writerFor(Region.class);
+    // Written back regions are only read by the game, CBOR is quicker to encode and decode
+    private static final CBORMapper WRITTEN_MAPPER = new CBORMapper();
+    private static final ObjectReader WRITTEN_READER = WRITTEN_MAPPER.readerFor(Region.class);
+    private static final ObjectWriter WRITTEN_WRITER = WRITTEN_MAPPER.writerFor(Region.class);
+    private static final Cleaner CLEANER = Cleaner.create();
+    private static final AtomicLong written_count = new AtomicLong();
+    private static final ConcurrentHashMap<Path, WorldRegions> opened = new ConcurrentHashMap<>();
+    private static Path written_directory = null;
+
+    final Path directory;
+    final RegionIndex index;
+
+    private WorldRegions(Path directory) throws IOException {
+        this.directory = directory;
+        this.index = RegionIndex.open(directory.resolve(RegionIndex.FILE));
+    }
+
+    /// Opens a region world. Every world is opened once per process, and shared by every game played in it.
+    static WorldRegions open(Path directory) throws IOException {
+        var path = directory.toAbsolutePath().normalize();
+        var regions = opened.get(path);
+        if (regions != null) {
+            return regions;
+        }
+        // Opening a world twice in a race is harmless
+        regions = new WorldRegions(path);
+        var previous = opened.putIfAbsent(path, regions);
+        return previous != null ? previous : regions;
+    }
+
+    /// Creates a new game with the regions around the player loaded.
+    GameState newGame() throws IOException {
+        var game = SaveFormat.JSON.decode(Files.readAllBytes(directory.resolve(MANIFEST)));
+        game.regions = this;
+        game.roomUpdateHook();
+        game.itemUpdateHook();
+        game.streamAround(game.player.getCurrentRoomId());
+        return game;
+    }
+
+    /// The rooms and items of a region, as stored in its file.
+    static final class Region {
+        @JsonProperty("rooms")
+        LinkedHashMap<String, Room> rooms = new LinkedHashMap<>();
+        @JsonProperty("items")
+        LinkedHashMap<String, Item> items = new LinkedHashMap<>();
+    }
+
+    /// A version of a region that a game wrote back when it unloaded the region. Versions of the game that hold the
+    /// same version of the region share it, and its file is deleted once none of them do.
+    static final class Written {
+        private final Path path;
+
+        private Written(Path path) {
+            this.path = path;
+            CLEANER.register(this, () -> deleteWritten(path));
+        }
+    }
+
+    /// Reads a region as it was last written back, or as it was compiled if `written` is null.
+    Region read(int region, Written written) throws IOException, JacksonException {
+        if (written != null) {
+            return WRITTEN_READER.readValue(Files.readAllBytes(written.path));
+        }
+        return READER.readValue(Files.readAllBytes(regionPath(directory, region)));
+    }
+
+    /// Writes back a region that is being unloaded.
+    Written write(int region, Region contents) throws IOException, JacksonException {
+        var path = writtenDirectory().resolve(region + "-" + written_count.incrementAndGet() + ".cbor");
+        Files.write(path, WRITTEN_WRITER.writeValueAsBytes(contents));
+        return new Written(path);
+    }
+
+    // Created on first use, and deleted on exit once the saves that may still read from it are written
+    private static synchronized Path writtenDirectory() throws IOException {
+        if (written_directory == null) {
+            var created = Files.createTempDirectory("zork-regions");
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    SaveManager.flushSaves(SHUTDOWN_TIMEOUT);
+                } catch (InterruptedException ignored) {
+                }
+                try (var files = Files.list(created)) {
+                    files.forEach(WorldRegions::deleteWritten);
+                    Files.deleteIfExists(created);
+                } catch (IOException e) {
+                    System.err.println("Failed to delete the written back regions in " + created + ": " + e);
+                }
+            }, "Zork-WorldRegions-Shutdown"));
+            written_directory = created;
+        }
+        return written_directory;
+    }
+
+    private static void deleteWritten(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.err.println("Failed to delete written back region " + path + ": " + e);
+        }
+    }
+
+    private static Path regionPath(Path directory, int region) {
+        return directory.resolve(REGIONS).resolve(region + ".json");
+    }
+
+    /// Compiles a world definition in the format of `initial_state.json` into a region world in the directory, with up
+    /// to `region_rooms` rooms per region. Returns the number of regions.
+    static int compile(byte[] world_json, Path directory, int region_rooms) throws IOException {
+        // The world is loaded the way the game loads it, which also lays out the map of the whole world
+        var game = SaveFormat.JSON.decode(world_json);
+        game.roomUpdateHook();
+        game.itemUpdateHook();
+
+        // Regions grow breadth-first along the exits of the first room that isn't in a region yet, so every region
+        // holds rooms near each other. Sorted, so the same world always compiles into the same regions.
+        var region_of = new HashMap<String, Integer>();
+        var regions = new ArrayList<List<String>>();
+        for (var start : new TreeSet<>(game.loaded_rooms.keySet())) {
+            if (region_of.containsKey(start)) {
+                continue;
+            }
+            var region = regions.size();
+            var rooms = new ArrayList<String>();
+            var pending = new ArrayDeque<String>();
+            pending.add(start);
+            region_of.put(start, region);
+            while (!pending.isEmpty()) {
+                var id = pending.poll();
+                rooms.add(id);
+                for (var exit : game.loaded_rooms.get(id).paths.values()) {
+                    if (rooms.size() + pending.size() < region_rooms && game.loaded_rooms.containsKey(exit) && !region_of.containsKey(exit)) {
+                        region_of.put(exit, region);
+                        pending.add(exit);
+                    }
+                }
+            }
+            regions.add(rooms);
+        }
+
+        var room_entries = new HashMap<String, RegionIndex.RoomEntry>();
+        var item_regions = new TreeMap<String, Integer>();
+        Files.createDirectories(directory.resolve(REGIONS));
+        try (var previous = Files.list(directory.resolve(REGIONS))) {
+            for (var file : previous.toList()) {
+                Files.delete(file);
+            }
+        }
+        for (int region = 0; region < regions.size(); region++) {
+            var contents = new Region();
+            for (var id : regions.get(region)) {
+                var room = game.loaded_rooms.get(id);
+                var location = game.layout.locate(id).orElseThrow();
+                room_entries.put(id, new RegionIndex.RoomEntry(region, location.getRow(), location.getColumn()));
+                contents.rooms.put(id, room);
+                for (var item_id : room.items) {
+                    var item = game.loaded_items.get(item_id);
+                    if (item != null) {
+                        contents.items.put(item_id, item);
+                        item_regions.put(item_id, region);
+                    }
+                }
+            }
+            Files.write(regionPath(directory, region), WRITER.writeValueAsBytes(contents));
+        }
+
+        // Names take precedence over aliases, and the first item with a given name wins
+        var item_names = new HashMap<String, String>();
+        item_regions.keySet().forEach(id -> {
+            var name = game.loaded_items.get(id).getName();
+            if (name != null) {
+                item_names.putIfAbsent(name.toLowerCase(), id);
+            }
+        });
+        item_regions.keySet().forEach(id -> game.loaded_items.get(id).getAliases().forEach(alias -> item_names.putIfAbsent(alias.toLowerCase(), id)));
+        Files.write(directory.resolve(RegionIndex.FILE), RegionIndex.compile(room_entries, regions, item_regions, item_names));
+
+        // The items in no room, such as the player's, are kept loaded by every game
+        var manifest = MAPPER.createObjectNode();
+        manifest.set("player", MAPPER.valueToTree(game.player));
+        var items = manifest.putObject("items");
+        new TreeMap<>(game.loaded_items).forEach((id, item) -> {
+            if (!item_regions.containsKey(id)) {
+                items.set(id, MAPPER.valueToTree(item));
+            }
+        });
+        Files.write(directory.resolve(MANIFEST), MAPPER.writeValueAsBytes(manifest));
+        return regions.size();
+    }
+
+    /// Compiles the world definition at the first path into a region world in the directory at the second path,
+    /// optionally with the given number of rooms per region.
+    static void main(String[] args) throws IOException {
+        if (args.length != 2 && args.length != 3) {
+            System.err.println("Usage: WorldRegions <world json> <directory> [rooms per region]");
+            System.exit(1);
+        }
+        var region_rooms = args.length == 3 ? Integer.parseInt(args[2]) : DEFAULT_REGION_ROOMS;
+        var directory = Path.of(args[1]);
+        var regions = compile(Files.readAllBytes(Path.of(args[0])), directory, region_rooms);
+        System.out.println("Compiled " + args[0] + " into " + regions + " regions of up to " + region_rooms + " rooms in " + directory);
+    }
+}
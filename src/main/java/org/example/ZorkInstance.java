@@ -1,36 +1,108 @@
 package org.example;
 
+import tools.jackson.core.JacksonException;
+
+import java.util.HashMap;
+import java.util.List;
 import java.util.Optional;
 
 public class ZorkInstance {
+    // How many times the player is asked for another save when the one they picked is being played in another session
+    private static final int MAX_SLOT_ATTEMPTS = 3;
+
     public GameState state;
+    // The versions of the game before its latest commands, for `undo` and `redo`
+    final GameHistory history = new GameHistory();
+    // The session playing this game, which holds the game's save slot so no other session plays in it. Null for games
+    // that aren't played by anyone, such as while replaying a journal.
+    private final Object session;
 
     public static Optional<ZorkInstance> loadOrCreateNew(ViewController controller) {
-        GameState state = null;
         controller.presentMessage("Welcome to my text adventure, pick a save file or create a new one");
-        var save_names = SaveManager.listSaveNames();
-        var selected = controller.presentTextSelectionListWithPrompt(save_names, "enter the name of a save file to create");
-        // Intentionally compares pointers to check if the user selected one of the options in the list, or entered a new save name.
-        for (var save_file_ref : save_names) {
-            if (save_file_ref != selected) {
-                continue;
+        for (int attempt = 1; ; attempt++) {
+            var saves = SaveManager.listSaves();
+            var labels = saves.stream().map(SaveSummary::toString).toList();
+            var selected = controller.presentTextSelectionListWithPrompt(labels, "enter the name of a save file to create");
+            var picked = SaveSummary.picked(saves, labels, selected);
+            // Names are matched against the saves without surrounding whitespace, so new saves are named the same way
+            var name = picked.map(SaveSummary::name).orElse(selected.strip());
+            if (SaveManager.openSlot(name, controller)) {
+                try {
+                    var instance = loadOrCreate(controller, name, picked.isPresent());
+                    if (instance.isEmpty()) {
+                        SaveManager.closeSlot(name, controller);
+                    }
+                    return instance;
+                } catch (RuntimeException e) {
+                    SaveManager.closeSlot(name, controller);
+                    throw e;
+                }
             }
-            state = SaveManager.loadState(selected);
-            break;
-        }
-        if (state == null) {
-            var initial_state = SaveManager.loadInitialState(selected);
-            if (initial_state.isEmpty()) {
-                controller.presentErrorMessage("Internal file `initial_state.json` is missing.");
+            controller.presentErrorMessage("Save \"" + name + "\" is being played in another session.");
+            if (attempt == MAX_SLOT_ATTEMPTS) {
                 return Optional.empty();
             }
-            state = initial_state.get();
         }
-        return Optional.of(new ZorkInstance(state));
+    }
+
+    private static Optional<ZorkInstance> loadOrCreate(ViewController controller, String name, boolean exists) {
+        if (exists) {
+            return Optional.of(new ZorkInstance(SaveManager.loadState(name), controller));
+        }
+        var initial_state = SaveManager.loadInitialState(name);
+        if (initial_state.isEmpty()) {
+            controller.presentErrorMessage("Internal file `initial_state.json` is missing.");
+            return Optional.empty();
+        }
+        var state = initial_state.get();
+        // Gives the journal a snapshot to be replayed onto. A save that exists was picked above, and is never replaced
+        // by a new game.
+        if (SaveManager.AUTOSAVE && !SaveManager.listSaveNames().contains(name)) {
+            SaveManager.saveState(name, state);
+        }
+        return Optional.of(new ZorkInstance(state, controller));
     }
 
     public ZorkInstance(GameState state) {
+        this(state, null);
+    }
+
+    private ZorkInstance(GameState state, Object session) {
         this.state = state;
+        this.session = session;
+    }
+
+    /// Releases the game's save slot once the session stops playing it.
+    void close() {
+        if (session != null && state.save_name != null) {
+            SaveManager.closeSlot(state.save_name, session);
+        }
+    }
+
+    /// Switches to the game of another save, unless another session is playing in it.
+    void load(String name) throws CommandException {
+        if (session != null && !SaveManager.openSlot(name, session)) {
+            throw new CommandException("Save \"" + name + "\" is being played in another session.");
+        }
+        var previous = state.save_name;
+        try {
+            state = SaveManager.loadState(name);
+        } catch (JacksonException e) {
+            if (session != null && !name.equals(previous)) {
+                SaveManager.closeSlot(name, session);
+            }
+            throw new CommandException("Failed to load save file: " + name);
+        }
+        if (session != null && previous != null && !previous.equals(name)) {
+            SaveManager.closeSlot(previous, session);
+        }
+    }
+
+    /// Fails if another session is playing in the slot, before this game saves into it or deletes it.
+    void checkSlotAvailable(String name) throws CommandException {
+        if (session != null && SaveManager.isOpenElsewhere(name, session)) {
+            throw new CommandException("Save \"" + name + "\" is being played in another session.");
+        }
     }
 
     public void advanceGame(ViewController controller, String command) {
@@ -42,6 +114,9 @@ public class ZorkInstance {
         var cmd = CommandRegistry.parse(command);
         if (cmd.isEmpty()) {
             var suggestions = CommandRegistry.autocomplete(this.state, command);
+            if (suggestions.isEmpty()) {
+                suggestions = CommandRegistry.suggestCorrections(this.state, command);
+            }
             if (suggestions.isEmpty()) {
                 controller.presentUrgentMessage("Unknown command.");
             } else {
@@ -50,15 +125,86 @@ public class ZorkInstance {
             return;
         }
         try {
+            var game = this.state;
+            // Only journaled commands change the game, so only they are worth undoing
+            var before = cmd.get() instanceof JournaledCommand ? game.snapshot() : null;
             cmd.get().execute(this);
+            // The command that ends the game isn't journaled, so the save resumes right before the ending
+            if (before != null && !this.state.isExitRequested) {
+                // A command that had nothing to act on would leave nothing to undo
+                if (!this.state.unchangedSince(before)) {
+                    history.recorded(before, this.state);
+                }
+                SaveManager.recordCommand(this.state, command);
+            }
+            // Loading a save starts over with another game
+            if (this.state != game) {
+                history.clear();
+                this.state.takeUpdateHooks(game);
+            }
         } catch (CommandException e) {
             controller.presentErrorMessage("Command failed: " + e.getMessage());
         }
+        // Everything the command changed is handed to the update hooks at once
+        this.state.dispatchChanges();
         if (this.state.isExitRequested) {
             controller.notifyOfCompletion();
         }
     }
 
+    /// Rewinds the game by one command for `undo`, or runs an undone command again for `redo`. The rewind is journaled,
+    /// as the save's journal no longer leads to the game.
+    void rewind(boolean forward) {
+        var journal_id = state.journal_id;
+        var sequence = state.journal_sequence;
+        var rewound = forward ? history.redo(state) : history.undo(state);
+        if (!rewound) {
+            state.controller.presentUrgentMessage(forward ? "Nothing to redo." : "Nothing to undo.");
+            return;
+        }
+        SaveManager.rewound(state, journal_id, sequence);
+        state.lookMessage();
+    }
+
+    /// Runs journaled commands again on a game loaded from an older snapshot, without presenting anything. Journaled
+    /// rewinds put back the version of the game they name, which was reached earlier in the replay.
+    static void replay(GameState game, List<SaveJournal.Entry> entries) {
+        var instance = new ZorkInstance(game);
+        game.controller = new ReplayViewController();
+        var versions = new HashMap<Long, GameState>();
+        versions.put(game.journal_sequence, game.snapshot());
+        for (var entry : entries) {
+            var target = SaveJournal.rewindTarget(entry);
+            if (target >= 0) {
+                var version = versions.get(target);
+                if (version == null) {
+                    System.err.println("Skipping journaled rewind to a version that can't be replayed: " + entry.command());
+                } else {
+                    game.restore(version);
+                }
+            } else {
+                replayCommand(instance, entry);
+            }
+            game.journal_sequence = entry.sequence();
+            versions.put(entry.sequence(), game.snapshot());
+        }
+        game.controller = null;
+        game.isExitRequested = false;
+    }
+
+    private static void replayCommand(ZorkInstance instance, SaveJournal.Entry entry) {
+        var cmd = CommandRegistry.parse(entry.command());
+        if (cmd.isEmpty() || !(cmd.get() instanceof JournaledCommand)) {
+            System.err.println("Skipping journaled command that can't be replayed: " + entry.command());
+            return;
+        }
+        try {
+            cmd.get().execute(instance);
+        } catch (CommandException e) {
+            System.err.println("Journaled command \"" + entry.command() + "\" failed on replay: " + e.getMessage());
+        }
+    }
+
     @Override
     public String toString() {
         return "ZorkInstance{" +
@@ -66,3 +212,46 @@ public class ZorkInstance {
                 '}';
     }
 }
+
+/// Discards everything a replayed command presents, replayed commands never ask the player for anything.
+class ReplayViewController implements ViewController {
+    @Override
+    public boolean WasExitRequested() {
+        return false;
+    }
+
+    @Override
+    public void notifyOfCompletion() {
+    }
+
+    @Override
+    public <T> Optional<T> presentSelectionList(List<T> options) {
+        return Optional.empty();
+    }
+
+    @Override
+    public String presentTextSelectionListWithPrompt(List<String> options, String prompt) {
+        return "";
+    }
+
+    @Override
+    public Optional<String> consumeTextInput() {
+        return Optional.empty();
+    }
+
+    @Override
+    public void presentTextPrompt(String prompt) {
+    }
+
+    @Override
+    public void presentMessage(String message) {
+    }
+
+    @Override
+    public void presentUrgentMessage(String message) {
+    }
+
+    @Override
+    public void presentErrorMessage(String message) {
+    }
+}